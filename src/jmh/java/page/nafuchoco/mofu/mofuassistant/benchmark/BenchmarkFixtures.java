@@ -0,0 +1,109 @@
+/*
+ * Copyright 2021 NAFU_at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package page.nafuchoco.mofu.mofuassistant.benchmark;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Server;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.EntityType;
+import org.bukkit.entity.Mob;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.PluginManager;
+import page.nafuchoco.mofu.mofuassistant.MofuAssistant;
+import page.nafuchoco.mofu.mofuassistant.MofuAssistantConfig;
+import page.nafuchoco.mofu.mofuassistant.metrics.PluginMetrics;
+import page.nafuchoco.mofu.mofuassistant.peaceful.PeacefulRuleSet;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+import static org.mockito.Mockito.*;
+
+/**
+ * ベンチマーク用のモックされたサーバーとエンティティ
+ * モックは呼び出しを記録しない設定 (stubOnly) で作成し、計測への影響を抑える
+ */
+public final class BenchmarkFixtures {
+    private static MofuAssistant plugin;
+
+    private BenchmarkFixtures() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * モックされたサーバーに登録されたプラグインを返します。
+     * 初回の呼び出し時にBukkitにモックのサーバーを設定します。
+     *
+     * @return モックされたプラグイン
+     */
+    public static synchronized MofuAssistant plugin() {
+        if (plugin != null)
+            return plugin;
+
+        Server server = mock(Server.class, withSettings().stubOnly());
+        PluginManager pluginManager = mock(PluginManager.class, withSettings().stubOnly());
+        when(server.getLogger()).thenReturn(Logger.getLogger("Benchmark"));
+        when(server.getPluginManager()).thenReturn(pluginManager);
+        Bukkit.setServer(server);
+
+        MofuAssistant mockPlugin = mock(MofuAssistant.class, withSettings().stubOnly());
+        when(mockPlugin.getServer()).thenReturn(server);
+        when(mockPlugin.getLogger()).thenReturn(Logger.getLogger("MofuAssistant"));
+        when(mockPlugin.getMetrics()).thenReturn(new PluginMetrics());
+        when(pluginManager.getPlugin("MofuAssistant")).thenReturn(mockPlugin);
+
+        // ポーション効果はサーバー実装がないと登録されないため、効果のルールは空にする
+        MofuAssistantConfig config = mock(MofuAssistantConfig.class, withSettings().stubOnly());
+        PeacefulRuleSet ruleSet = PeacefulRuleSet.compile(new MofuAssistantConfig.PeacefulRulesConfig(
+                List.of(),
+                List.of("CLOSEST_PLAYER", "TARGET_ATTACKED_ENTITY", "TARGET_ATTACKED_NEARBY_ENTITY"),
+                List.of("PRIMED_TNT")));
+        when(config.getPeacefulRuleSet()).thenReturn(ruleSet);
+        when(mockPlugin.getPluginConfig()).thenReturn(config);
+
+        plugin = mockPlugin;
+        return plugin;
+    }
+
+    public static World world(String name) {
+        World world = mock(World.class, withSettings().stubOnly());
+        when(world.getName()).thenReturn(name);
+        return world;
+    }
+
+    public static Player player(World world) {
+        Player player = mock(Player.class, withSettings().stubOnly());
+        when(player.getUniqueId()).thenReturn(UUID.randomUUID());
+        when(player.getType()).thenReturn(EntityType.PLAYER);
+        when(player.getWorld()).thenReturn(world);
+        when(player.getHealth()).thenReturn(20.0);
+        when(player.hasPermission("mofuassistant.peaceful.bypass")).thenReturn(false);
+        return player;
+    }
+
+    public static Entity mob(EntityType type) {
+        Class<? extends Entity> entityClass = type.getEntityClass();
+        if (entityClass == null || !Mob.class.isAssignableFrom(entityClass))
+            throw new IllegalArgumentException("Not a mob: " + type);
+
+        Entity mob = mock(entityClass, withSettings().stubOnly());
+        when(mob.getType()).thenReturn(type);
+        return mob;
+    }
+}
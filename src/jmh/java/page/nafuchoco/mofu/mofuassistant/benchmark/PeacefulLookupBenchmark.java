@@ -0,0 +1,85 @@
+/*
+ * Copyright 2021 NAFU_at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package page.nafuchoco.mofu.mofuassistant.benchmark;
+
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.EntityType;
+import org.openjdk.jmh.annotations.*;
+import page.nafuchoco.mofu.mofuassistant.MobHelper;
+import page.nafuchoco.mofu.mofuassistant.data.MofuPlayerData;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * リスナーから呼び出される判定処理単体のベンチマーク
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PeacefulLookupBenchmark {
+    private static final int SIZE = 1024;
+
+    @Param({"false", "true"})
+    public boolean keepChangeWorld;
+
+    private Entity[] entities;
+    private MofuPlayerData.PlayerSettings[] settings;
+    private World[] worlds;
+    private int cursor;
+
+    @Setup
+    public void setUp() {
+        BenchmarkFixtures.plugin();
+        MofuPlayerData.PlayerSettings.setKeepChangeWorld(keepChangeWorld);
+
+        EntityType[] types = {EntityType.ZOMBIE, EntityType.COW, EntityType.WOLF, EntityType.PHANTOM, EntityType.VILLAGER};
+        World[] knownWorlds = {
+                BenchmarkFixtures.world("world"), BenchmarkFixtures.world("world_nether"), BenchmarkFixtures.world("world_the_end")};
+
+        Random random = new Random(0);
+        entities = new Entity[SIZE];
+        settings = new MofuPlayerData.PlayerSettings[SIZE];
+        worlds = new World[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            entities[i] = BenchmarkFixtures.mob(types[random.nextInt(types.length)]);
+            settings[i] = new MofuPlayerData.PlayerSettings();
+            for (World world : knownWorlds) {
+                if (random.nextBoolean())
+                    settings[i].setPeacefulMode(world, true);
+            }
+            worlds[i] = knownWorlds[random.nextInt(knownWorlds.length)];
+        }
+    }
+
+    @Benchmark
+    public boolean mobHelperIsOffensive() {
+        return MobHelper.isOffensive(entities[next()]);
+    }
+
+    @Benchmark
+    public boolean playerSettingsIsPeacefulMode() {
+        int i = next();
+        return settings[i].isPeacefulMode(worlds[i]);
+    }
+
+    private int next() {
+        cursor = (cursor + 1) & (SIZE - 1);
+        return cursor;
+    }
+}
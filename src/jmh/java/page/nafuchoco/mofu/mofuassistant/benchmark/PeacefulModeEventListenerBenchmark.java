@@ -0,0 +1,120 @@
+/*
+ * Copyright 2021 NAFU_at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package page.nafuchoco.mofu.mofuassistant.benchmark;
+
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.EntityType;
+import org.bukkit.entity.Player;
+import org.bukkit.event.entity.EntityDamageByEntityEvent;
+import org.bukkit.event.entity.EntityDamageEvent;
+import org.bukkit.event.entity.EntityTargetEvent;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import page.nafuchoco.mofu.mofuassistant.MofuAssistant;
+import page.nafuchoco.mofu.mofuassistant.listener.PeacefulModeEventListener;
+import page.nafuchoco.mofu.mofuassistant.peaceful.PeacefulEffectApplier;
+import page.nafuchoco.mofu.mofuassistant.peaceful.PeacefulPlayerIndex;
+import page.nafuchoco.mofu.mofuassistant.peaceful.PeacefulZoneIndex;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * モブファームなどで大量に発生するイベントを想定した、PeacefulModeEventListenerのベンチマーク
+ * ピースフルモードのプレイヤーの割合を変えて、イベント1件あたりの処理時間と割り当て量を計測する
+ * <p>
+ * モックの呼び出し自体にもコストがあるため、mockBaselineの結果を差し引いて比較すること
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PeacefulModeEventListenerBenchmark {
+    private static final int PLAYERS = 100;
+    private static final int EVENTS = 1024;
+    private static final EntityType[] MOB_TYPES = {
+            EntityType.ZOMBIE, EntityType.SKELETON, EntityType.CREEPER, EntityType.SPIDER, EntityType.COW};
+    private static final EntityTargetEvent.TargetReason[] REASONS = {
+            EntityTargetEvent.TargetReason.CLOSEST_PLAYER,
+            EntityTargetEvent.TargetReason.TARGET_ATTACKED_ENTITY,
+            EntityTargetEvent.TargetReason.RANDOM_TARGET};
+
+    @Param({"0", "50", "100"})
+    public int peacefulPercent;
+
+    private PeacefulModeEventListener listener;
+    private EntityTargetEvent[] targetEvents;
+    private EntityDamageByEntityEvent[] damageEvents;
+    private int cursor;
+
+    @Setup
+    @SuppressWarnings("deprecation")
+    public void setUp() {
+        MofuAssistant plugin = BenchmarkFixtures.plugin();
+        PeacefulPlayerIndex index = new PeacefulPlayerIndex(plugin, new PeacefulZoneIndex());
+        listener = new PeacefulModeEventListener(index, new PeacefulEffectApplier(plugin.getMetrics()));
+
+        World world = BenchmarkFixtures.world("world");
+        Player[] players = new Player[PLAYERS];
+        for (int i = 0; i < PLAYERS; i++) {
+            players[i] = BenchmarkFixtures.player(world);
+            index.update(players[i], i < PLAYERS * peacefulPercent / 100);
+        }
+
+        Random random = new Random(0);
+        targetEvents = new EntityTargetEvent[EVENTS];
+        damageEvents = new EntityDamageByEntityEvent[EVENTS];
+        for (int i = 0; i < EVENTS; i++) {
+            Player player = players[random.nextInt(PLAYERS)];
+            Entity mob = BenchmarkFixtures.mob(MOB_TYPES[random.nextInt(MOB_TYPES.length)]);
+            targetEvents[i] = new EntityTargetEvent(mob, player, REASONS[random.nextInt(REASONS.length)]);
+            // 半数はMobからプレイヤーへの攻撃、残りはプレイヤーからMobへの攻撃
+            damageEvents[i] = random.nextBoolean()
+                    ? new EntityDamageByEntityEvent(mob, player, EntityDamageEvent.DamageCause.ENTITY_ATTACK, 2.0)
+                    : new EntityDamageByEntityEvent(player, mob, EntityDamageEvent.DamageCause.ENTITY_ATTACK, 2.0);
+        }
+    }
+
+    @Benchmark
+    public boolean targetEvent() {
+        EntityTargetEvent event = targetEvents[next()];
+        event.setCancelled(false);
+        listener.onEntityTargetEvent(event);
+        return event.isCancelled();
+    }
+
+    @Benchmark
+    public boolean damageByEntityEvent() {
+        EntityDamageByEntityEvent event = damageEvents[next()];
+        event.setCancelled(false);
+        listener.onEntityDamageByEntityEvent(event);
+        return event.isCancelled();
+    }
+
+    @Benchmark
+    public void mockBaseline(Blackhole blackhole) {
+        // リスナーが最低限行うモックの呼び出しのみ
+        EntityTargetEvent event = targetEvents[next()];
+        blackhole.consume(event.getEntity().getType());
+        blackhole.consume(((Player) event.getTarget()).getUniqueId());
+    }
+
+    private int next() {
+        cursor = (cursor + 1) & (EVENTS - 1);
+        return cursor;
+    }
+}
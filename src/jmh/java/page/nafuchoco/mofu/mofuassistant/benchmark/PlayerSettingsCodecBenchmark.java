@@ -0,0 +1,115 @@
+/*
+ * Copyright 2021 NAFU_at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package page.nafuchoco.mofu.mofuassistant.benchmark;
+
+import com.google.gson.Gson;
+import org.bukkit.World;
+import org.openjdk.jmh.annotations.*;
+import page.nafuchoco.mofu.mofuassistant.data.MofuPlayerData;
+import page.nafuchoco.mofu.mofuassistant.data.PlayerSettingsCodec;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PlayerSettingsの保存形式の比較
+ * 以前のGsonによるJSON形式と、PlayerSettingsCodecによるバイナリ形式のエンコード・デコードの処理時間を計測する
+ * 1行あたりのサイズはセットアップ時に標準出力に出力する
+ * セットアップ時に往復変換と壊れたデータの検出も確認し、失敗した場合は計測を行わない
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PlayerSettingsCodecBenchmark {
+    private static final Gson gson = new Gson();
+
+    @Param({"0", "1", "3"})
+    public int worlds;
+
+    private MofuPlayerData.PlayerSettings settings;
+    private String json;
+    private byte[] binary;
+
+    @Setup
+    public void setUp() throws IOException {
+        BenchmarkFixtures.plugin();
+        String[] worldNames = {"world", "world_nether", "world_the_end"};
+        settings = new MofuPlayerData.PlayerSettings();
+        for (int i = 0; i < worlds; i++) {
+            World world = BenchmarkFixtures.world(worldNames[i]);
+            settings.setPeacefulMode(world, true);
+        }
+
+        json = gson.toJson(settings);
+        binary = PlayerSettingsCodec.encode(settings);
+        System.out.printf("%n[row size] worlds=%d json=%d bytes, binary=%d bytes%n",
+                worlds, json.getBytes(StandardCharsets.UTF_8).length, binary.length);
+        verifyCodec();
+    }
+
+    private void verifyCodec() throws IOException {
+        if (!Arrays.equals(binary, PlayerSettingsCodec.encode(PlayerSettingsCodec.decode(binary))))
+            throw new IllegalStateException("Round trip of the binary format does not match.");
+        if (!Arrays.equals(binary, PlayerSettingsCodec.encode(PlayerSettingsCodec.decodeLegacyJson(json))))
+            throw new IllegalStateException("Legacy JSON does not decode to the same settings.");
+
+        byte[][] corrupted = {
+                {},                                             // 空
+                {2, 0, 0},                                      // 未対応のバージョン
+                {1, 0, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F}, // 負の要素数
+                {1, 0, 0x7F},                                   // 残りのバイト数を超える要素数
+                {1, 0, 1, 0x10, 'w'},                           // 残りのバイト数を超える文字列長
+                {1, 0, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80} // 長すぎるVarInt
+        };
+        for (byte[] data : corrupted) {
+            try {
+                PlayerSettingsCodec.decode(data);
+                throw new IllegalStateException("Corrupted data was accepted: " + Arrays.toString(data));
+            } catch (IOException e) {
+                // 期待どおり
+            }
+        }
+    }
+
+    @Benchmark
+    public String gsonEncode() {
+        return gson.toJson(settings);
+    }
+
+    @Benchmark
+    public MofuPlayerData.PlayerSettings gsonDecode() {
+        return gson.fromJson(json, MofuPlayerData.PlayerSettings.class);
+    }
+
+    @Benchmark
+    public byte[] codecEncode() {
+        return PlayerSettingsCodec.encode(settings);
+    }
+
+    @Benchmark
+    public MofuPlayerData.PlayerSettings codecDecode() throws IOException {
+        return PlayerSettingsCodec.decode(binary);
+    }
+
+    @Benchmark
+    public MofuPlayerData.PlayerSettings legacyJsonDecode() throws IOException {
+        // 移行時のみ実行される、JSON形式からの読み込み
+        return PlayerSettingsCodec.decodeLegacyJson(json);
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2021 NAFU_at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package page.nafuchoco.mofu.mofuassistant.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import page.nafuchoco.mofu.mofuassistant.MofuAssistantConfig;
+import page.nafuchoco.mofu.mofuassistant.community.CommunityPool;
+import page.nafuchoco.mofu.mofuassistant.database.CommunityPoolTable;
+import page.nafuchoco.mofu.mofuassistant.database.DatabaseConnector;
+import page.nafuchoco.mofu.mofuassistant.database.SchemaMigrator;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * SQLiteで読み込みと書き込みを並行して行った場合のベンチマーク
+ * walModeがfalseの場合は従来通り全ての処理が単一の接続を共有し、trueの場合は読み込みが別のプールで行われる
+ * 3つの読み込みスレッドと1つの書き込みスレッドで、GUIのプール参照と受け取り処理を模擬する
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SQLiteConnectorBenchmark {
+    private static final int CYCLE_ID = 1;
+    private static final String[] COMMUNITIES = new String[64];
+
+    static {
+        for (int i = 0; i < COMMUNITIES.length; i++)
+            COMMUNITIES[i] = "community" + i;
+    }
+
+    @Param({"false", "true"})
+    public boolean walMode;
+
+    private Path directory;
+    private DatabaseConnector connector;
+    private CommunityPoolTable poolTable;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SQLException {
+        directory = Files.createTempDirectory("mofuassistant-benchmark");
+        connector = new DatabaseConnector(DatabaseConnector.DatabaseType.SQLITE, null,
+                directory.resolve("database.db").toString(), null, null, "ma_",
+                new MofuAssistantConfig.SQLiteConfig(walMode, 3, 64, 8192, 5000));
+        poolTable = new CommunityPoolTable("community_pool", connector);
+        new SchemaMigrator(connector, Logger.getLogger(getClass().getName())).migrate(List.of(poolTable));
+        for (String community : COMMUNITIES)
+            poolTable.createOrResetPool(CYCLE_ID, community, Integer.MAX_VALUE);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        connector.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator)
+                Files.delete(file);
+        }
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(3)
+    public CommunityPool read(Cursor cursor) throws SQLException {
+        return poolTable.getPool(CYCLE_ID, cursor.next());
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public boolean write(Cursor cursor) throws SQLException {
+        return poolTable.claimFromPool(CYCLE_ID, cursor.next(), 1);
+    }
+
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int index;
+
+        public String next() {
+            index = (index + 1) % COMMUNITIES.length;
+            return COMMUNITIES[index];
+        }
+    }
+}
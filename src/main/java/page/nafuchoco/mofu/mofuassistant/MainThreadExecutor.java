@@ -0,0 +1,58 @@
+/*
+ * Copyright 2021 NAFU_at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package page.nafuchoco.mofu.mofuassistant;
+
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+/**
+ * 非同期処理の結果をサーバーのメインスレッドで受け取るためのExecutor
+ * メインスレッドから呼ばれた場合はその場で実行し、それ以外は次のtickで実行する
+ * プラグインが無効化された後の処理は破棄される
+ */
+public class MainThreadExecutor implements Executor {
+    private final Plugin plugin;
+
+    public MainThreadExecutor(Plugin plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (Bukkit.isPrimaryThread())
+            command.run();
+        else if (plugin.isEnabled())
+            Bukkit.getScheduler().runTask(plugin, command);
+    }
+
+    /**
+     * CompletableFutureが包んだ例外から元の例外を取り出します。
+     *
+     * @param throwable 非同期処理で発生した例外
+     * @return 元の例外
+     */
+    public static Throwable unwrap(Throwable throwable) {
+        while ((throwable instanceof CompletionException || throwable instanceof ExecutionException)
+                && throwable.getCause() != null)
+            throwable = throwable.getCause();
+        return throwable;
+    }
+}
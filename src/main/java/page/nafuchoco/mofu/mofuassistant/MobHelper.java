@@ -18,30 +18,125 @@ package page.nafuchoco.mofu.mofuassistant;
 
 import org.bukkit.entity.*;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.logging.Level;
 
 public class MobHelper {
+    private static final byte OFFENSIVE = 1;
+    private static final byte HOSTILE = 1 << 1;
+
+    // 設定で変更されていない場合の分類。従来のinstanceofによる判定と同じ結果になる
+    private static final List<Class<? extends Entity>> DEFAULT_OFFENSIVE = List.of(
+            Monster.class, Phantom.class, PolarBear.class, Dolphin.class, Hoglin.class, Wolf.class, Llama.class, Panda.class);
+    private static final List<Class<? extends Entity>> DEFAULT_HOSTILE = List.of(
+            Monster.class, Phantom.class);
+
+    // EntityTypeのordinalを添字とする分類テーブル
+    private static volatile byte[] classification = buildTable(null);
 
     public static List<Mob> getOffensive(List<Entity> entities) {
-        return entities.stream()
-                .filter(MobHelper::isOffensive)
-                .map(Mob.class::cast)
-                .toList();
+        List<Mob> offensive = new ArrayList<>();
+        forEachOffensive(entities, offensive::add);
+        return offensive;
+    }
+
+    /**
+     * 攻撃的なMobのみに対して処理を実行します。
+     * 中間のリストを生成しないため、大量のエンティティを走査する場合に使用します。
+     *
+     * @param entities 走査するエンティティ
+     * @param action   攻撃的なMobに対して実行する処理
+     */
+    public static void forEachOffensive(List<Entity> entities, Consumer<? super Mob> action) {
+        for (int i = 0, size = entities.size(); i < size; i++) {
+            Entity entity = entities.get(i);
+            if (isOffensive(entity))
+                action.accept((Mob) entity);
+        }
+    }
+
+    /**
+     * 攻撃的なMobのみに対して処理を実行します。
+     *
+     * @param entities 走査するエンティティ
+     * @param action   攻撃的なMobに対して実行する処理
+     */
+    public static void forEachOffensive(Entity[] entities, Consumer<? super Mob> action) {
+        for (Entity entity : entities) {
+            if (isOffensive(entity))
+                action.accept((Mob) entity);
+        }
     }
 
     public static boolean isOffensive(Entity entity) {
-        return entity instanceof Monster
-                || entity instanceof Phantom
-                || entity instanceof PolarBear
-                || entity instanceof Dolphin
-                || entity instanceof Hoglin
-                || entity instanceof Wolf
-                || entity instanceof Llama
-                || entity instanceof Panda;
+        return (classification[entity.getType().ordinal()] & OFFENSIVE) != 0;
     }
 
     public static boolean isHostile(Entity entity) {
-        return entity instanceof Monster
-                || entity instanceof Phantom;
+        return (classification[entity.getType().ordinal()] & HOSTILE) != 0;
+    }
+
+    public static boolean isOffensive(EntityType type) {
+        return (classification[type.ordinal()] & OFFENSIVE) != 0;
+    }
+
+    public static boolean isHostile(EntityType type) {
+        return (classification[type.ordinal()] & HOSTILE) != 0;
+    }
+
+    /**
+     * 設定に基づいて分類テーブルを再構築します。
+     *
+     * @param config Mobの分類設定
+     */
+    public static void reload(MofuAssistantConfig.MobClassificationConfig config) {
+        classification = buildTable(config);
+    }
+
+    private static byte[] buildTable(MofuAssistantConfig.MobClassificationConfig config) {
+        EntityType[] types = EntityType.values();
+        byte[] table = new byte[types.length];
+        for (EntityType type : types) {
+            Class<? extends Entity> entityClass = type.getEntityClass();
+            if (entityClass == null)
+                continue;
+            if (DEFAULT_OFFENSIVE.stream().anyMatch(c -> c.isAssignableFrom(entityClass)))
+                table[type.ordinal()] |= OFFENSIVE;
+            if (DEFAULT_HOSTILE.stream().anyMatch(c -> c.isAssignableFrom(entityClass)))
+                table[type.ordinal()] |= HOSTILE;
+        }
+
+        if (config != null) {
+            apply(table, config.offensiveAdd(), OFFENSIVE, true);
+            apply(table, config.offensiveRemove(), OFFENSIVE, false);
+            apply(table, config.hostileAdd(), HOSTILE, true);
+            apply(table, config.hostileRemove(), HOSTILE, false);
+        }
+        return table;
+    }
+
+    private static void apply(byte[] table, List<String> typeNames, byte flag, boolean add) {
+        for (String typeName : typeNames) {
+            EntityType type;
+            try {
+                type = EntityType.valueOf(typeName.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                MofuAssistant.getInstance().getLogger().log(Level.WARNING, "Unknown entity type in mob classification: " + typeName);
+                continue;
+            }
+
+            if (add) {
+                // ターゲットの解除でMobとして扱うため、Mob以外は追加できない
+                if (type.getEntityClass() == null || !Mob.class.isAssignableFrom(type.getEntityClass())) {
+                    MofuAssistant.getInstance().getLogger().log(Level.WARNING, "Entity type is not a mob and cannot be classified: " + typeName);
+                    continue;
+                }
+                table[type.ordinal()] |= flag;
+            } else {
+                table[type.ordinal()] &= (byte) ~flag;
+            }
+        }
     }
 }
@@ -27,21 +27,43 @@ import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
+import org.bukkit.event.player.PlayerLoginEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
 import org.bukkit.plugin.RegisteredServiceProvider;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.jetbrains.annotations.NotNull;
 import page.nafuchoco.mofu.mofuassistant.community.*;
+import page.nafuchoco.mofu.mofuassistant.data.MofuPlayerData;
+import page.nafuchoco.mofu.mofuassistant.data.PersistentDataPlayerStorage;
+import page.nafuchoco.mofu.mofuassistant.data.PlayerDataBatchLoader;
+import page.nafuchoco.mofu.mofuassistant.data.PlayerDataLoadException;
+import page.nafuchoco.mofu.mofuassistant.data.PlayerDataTransfer;
+import page.nafuchoco.mofu.mofuassistant.data.PlayerDataWriteQueue;
+import page.nafuchoco.mofu.mofuassistant.data.WorldIndex;
 import page.nafuchoco.mofu.mofuassistant.database.CommunityDistributionTable;
 import page.nafuchoco.mofu.mofuassistant.database.CommunityInviteTable;
 import page.nafuchoco.mofu.mofuassistant.database.CommunityPoolTable;
 import page.nafuchoco.mofu.mofuassistant.database.DatabaseConnector;
 import page.nafuchoco.mofu.mofuassistant.database.DistributionCycleTable;
 import page.nafuchoco.mofu.mofuassistant.database.MofuAssistantTable;
+import page.nafuchoco.mofu.mofuassistant.database.PeacefulZoneTable;
+import page.nafuchoco.mofu.mofuassistant.database.SchemaMigrator;
 import page.nafuchoco.mofu.mofuassistant.event.PlayerPeacefulModeChangeEvent;
-import page.nafuchoco.mofu.mofuassistant.listener.PeacefulModeEventListener;
+import page.nafuchoco.mofu.mofuassistant.metrics.PluginMetrics;
+import page.nafuchoco.mofu.mofuassistant.peaceful.DeaggroScanner;
+import page.nafuchoco.mofu.mofuassistant.peaceful.PeacefulPlayerIndex;
+import page.nafuchoco.mofu.mofuassistant.peaceful.PeacefulSpawnSuppressor;
+import page.nafuchoco.mofu.mofuassistant.peaceful.PeacefulZone;
+import page.nafuchoco.mofu.mofuassistant.peaceful.PeacefulZoneIndex;
+import page.nafuchoco.mofu.mofuassistant.peaceful.TargetSweeper;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.logging.Level;
 import java.util.regex.Pattern;
@@ -58,17 +80,29 @@ public final class MofuAssistant extends JavaPlugin implements Listener {
     }
 
 
+    private final PluginMetrics metrics = new PluginMetrics();
+    private final MainThreadExecutor mainThreadExecutor = new MainThreadExecutor(this);
     private MofuAssistantConfig config;
     private DatabaseConnector connector;
     private MofuAssistantTable mofuAssistantTable;
+    private PlayerDataWriteQueue playerDataWriteQueue;
+    private PlayerDataBatchLoader playerDataBatchLoader;
+    private PlayerDataTransfer playerDataTransfer;
+    private PersistentDataPlayerStorage persistentDataStorage;
     private CommunityDistributionTable communityDistributionTable;
     private CommunityPoolTable communityPoolTable;
     private DistributionCycleTable distributionCycleTable;
     private CommunityInviteTable communityInviteTable;
+    private PeacefulZoneTable peacefulZoneTable;
     private CommunityDistributionManager communityManager;
     private CommunityItemStorage communityItemStorage;
     private DistributionGUI distributionGUI;
     private DistributionScheduler distributionScheduler;
+    private PeacefulZoneIndex peacefulZoneIndex;
+    private PeacefulPlayerIndex peacefulPlayerIndex;
+    private DeaggroScanner deaggroScanner;
+    private TargetSweeper targetSweeper;
+    private PeacefulSpawnSuppressor spawnSuppressor;
 
     @Override
     public void onEnable() {
@@ -88,44 +122,52 @@ public final class MofuAssistant extends JavaPlugin implements Listener {
                 getPluginConfig().getInitConfig().getDatabase(),
                 getPluginConfig().getInitConfig().getUsername(),
                 getPluginConfig().getInitConfig().getPassword(),
-                getPluginConfig().getInitConfig().getTablePrefix());
+                getPluginConfig().getInitConfig().getTablePrefix(),
+                getPluginConfig().getSQLiteConfig(),
+                getPluginConfig().getPoolConfig(),
+                getMetrics());
         mofuAssistantTable = new MofuAssistantTable("playerdata", connector);
-
-        try {
-            mofuAssistantTable.createTable();
-        } catch (SQLException e) {
-            getInstance().getLogger().log(Level.WARNING, "An error occurred while initializing the database table.", e);
-        }
-
-        // コミュニティアイテム配布システムの初期化
         communityDistributionTable = new CommunityDistributionTable("community_distribution", connector);
-        try {
-            communityDistributionTable.createTable();
-        } catch (SQLException e) {
-            getInstance().getLogger().log(Level.WARNING, "An error occurred while initializing the community distribution table.", e);
-        }
-
         communityPoolTable = new CommunityPoolTable("community_pools", connector);
-        try {
-            communityPoolTable.createTable();
-        } catch (SQLException e) {
-            getInstance().getLogger().log(Level.WARNING, "An error occurred while initializing the community pool table.", e);
-        }
-
         distributionCycleTable = new DistributionCycleTable("distribution_cycles", connector);
+        communityInviteTable = new CommunityInviteTable("community_invites", connector);
+        peacefulZoneTable = new PeacefulZoneTable("peaceful_zones", connector);
+
+        // スキーマが最新の場合はバージョンの読み込みのみで完了する
         try {
-            distributionCycleTable.createTable();
+            long startedAt = System.nanoTime();
+            new SchemaMigrator(connector, getLogger()).migrate(List.of(mofuAssistantTable, communityDistributionTable,
+                    communityPoolTable, distributionCycleTable, communityInviteTable, peacefulZoneTable));
+            metrics.timer("database.schema.migrate").record(System.nanoTime() - startedAt);
         } catch (SQLException e) {
-            getInstance().getLogger().log(Level.WARNING, "An error occurred while initializing the distribution cycle table.", e);
+            getInstance().getLogger().log(Level.WARNING, "An error occurred while initializing the database tables.", e);
         }
-
-        communityInviteTable = new CommunityInviteTable("community_invites", connector);
+        playerDataWriteQueue = new PlayerDataWriteQueue(this);
+        playerDataWriteQueue.start(getPluginConfig().getInitConfig().getFlushIntervalTicks());
+        playerDataBatchLoader = new PlayerDataBatchLoader(this,
+                getPluginConfig().getInitConfig().getBatchWindowMillis(),
+                getPluginConfig().getInitConfig().getBatchMaxSize());
+        playerDataTransfer = new PlayerDataTransfer(this);
+        if (getPluginConfig().getInitConfig().getStorageType() == MofuAssistantConfig.StorageType.PDC)
+            persistentDataStorage = new PersistentDataPlayerStorage(this);
+
+        peacefulZoneIndex = new PeacefulZoneIndex();
         try {
-            communityInviteTable.createTable();
+            List<PeacefulZone> zones = new ArrayList<>();
+            for (PeacefulZone zone : peacefulZoneTable.getAllZones()) {
+                // 上限を下げた場合に備えて、上限を超えるゾーンは索引に追加しない
+                if (zone.chunkArea() > getPluginConfig().getZoneConfig().maxChunkArea())
+                    getLogger().log(Level.WARNING, "The peaceful zone " + zone.name() + " covers " + zone.chunkArea()
+                            + " chunks, which exceeds peacefulMode.zones.maxChunkArea. It will be ignored.");
+                else
+                    zones.add(zone);
+            }
+            peacefulZoneIndex.load(zones);
         } catch (SQLException e) {
-            getInstance().getLogger().log(Level.WARNING, "An error occurred while initializing the community invite table.", e);
+            getInstance().getLogger().log(Level.WARNING, "An error occurred while loading the peaceful zones.", e);
         }
 
+        // コミュニティアイテム配布システムの初期化
         communityManager = new CommunityDistributionManager(this);
         communityItemStorage = new CommunityItemStorage(this);
         distributionGUI = new DistributionGUI(this, communityManager, communityItemStorage, communityDistributionTable, communityPoolTable, distributionCycleTable);
@@ -150,11 +192,56 @@ public final class MofuAssistant extends JavaPlugin implements Listener {
             getLogger().log(Level.WARNING, "LuckPerms not found. Community commands will not be registered.");
         }
 
-        getServer().getPluginManager().registerEvents(new PeacefulModeEventListener(), this);
+        // ピースフルモードのリスナーは索引が空でない間のみ登録される
+        peacefulPlayerIndex = new PeacefulPlayerIndex(this, peacefulZoneIndex);
+        if (provider != null)
+            peacefulPlayerIndex.getBypassCache().subscribe(this, provider.getProvider());
+        getServer().getPluginManager().registerEvents(peacefulPlayerIndex, this);
+        peacefulPlayerIndex.updateListenerRegistration();
+        warmUpOnlinePlayers();
+        deaggroScanner = new DeaggroScanner(this, peacefulPlayerIndex);
+        targetSweeper = new TargetSweeper(this, peacefulPlayerIndex);
+        targetSweeper.start();
+        spawnSuppressor = new PeacefulSpawnSuppressor(this, peacefulPlayerIndex, peacefulZoneIndex);
+        spawnSuppressor.start();
         getServer().getPluginManager().registerEvents(distributionGUI, this);
         getServer().getPluginManager().registerEvents(this, this);
     }
 
+    /**
+     * 再読み込み時に既にログインしているプレイヤーのデータを、非同期の1回のクエリでまとめて読み込む
+     * 読み込みが完了するまで、それらのプレイヤーはピースフルモードではないものとして扱われる
+     */
+    private void warmUpOnlinePlayers() {
+        Map<UUID, String> players = new HashMap<>();
+        for (Player player : Bukkit.getOnlinePlayers())
+            players.put(player.getUniqueId(), player.getName());
+        if (players.isEmpty())
+            return;
+        // PDCはメモリ上にあるため、まとめて読み込む必要はない
+        if (persistentDataStorage != null) {
+            peacefulPlayerIndex.refreshAll();
+            return;
+        }
+
+        long startedAt = System.nanoTime();
+        MofuAssistantApi.getInstance().warmUpPlayerData(players).whenComplete((v, throwable) -> Bukkit.getScheduler().runTask(this, () -> {
+            if (throwable != null) {
+                // 個別の読み込みに切り替える
+                getLogger().log(Level.WARNING, "An error occurred while loading the data of online players.", throwable);
+            } else {
+                metrics.timer("playerdata.warmup").record(System.nanoTime() - startedAt);
+                getLogger().log(Level.INFO, "Loaded the data of " + players.size() + " online players.");
+            }
+            // 読み込み中にログアウトしたプレイヤーのデータは破棄する
+            for (UUID uuid : players.keySet()) {
+                if (Bukkit.getPlayer(uuid) == null)
+                    MofuAssistantApi.getInstance().dropStoreData(uuid);
+            }
+            peacefulPlayerIndex.refreshAll();
+        }));
+    }
+
     /**
      * 設定ファイルに不足している項目を自動追加
      */
@@ -184,10 +271,18 @@ public final class MofuAssistant extends JavaPlugin implements Listener {
     @Override
     public void onDisable() {
         // Plugin shutdown logic
+        if (deaggroScanner != null)
+            deaggroScanner.stop();
+        if (targetSweeper != null)
+            targetSweeper.stop();
+        if (spawnSuppressor != null)
+            spawnSuppressor.stop();
         if (distributionScheduler != null)
             distributionScheduler.stop();
         if (distributionGUI != null)
             distributionGUI.cleanup();
+        if (playerDataWriteQueue != null)
+            playerDataWriteQueue.stop();
         if (connector != null)
             connector.close();
     }
@@ -203,10 +298,24 @@ public final class MofuAssistant extends JavaPlugin implements Listener {
                     return false;
                 else if ("reload".equals(args[0])) {
                     getPluginConfig().reloadConfig();
+                    peacefulPlayerIndex.refreshAll();
+                    peacefulPlayerIndex.getBypassCache().invalidateAll();
+                    targetSweeper.start();
+                    spawnSuppressor.start();
                     sender.sendMessage(ChatColor.GREEN + "[MofuAssistant] Successfully reloaded the configuration.");
+                } else if ("metrics".equals(args[0])) {
+                    sender.sendMessage(ChatColor.GREEN + "[MofuAssistant] Metrics:");
+                    getMetrics().describe().forEach(line -> sender.sendMessage(ChatColor.GRAY + line));
+                } else if ("zone".equals(args[0])) {
+                    return onZoneCommand(sender, args);
+                } else if ("export".equals(args[0])) {
+                    return handleExport(sender, args);
+                } else if ("import".equals(args[0])) {
+                    return handleImport(sender, args);
                 } else {
                     return false;
                 }
+                break;
 
             case "peaceful":
                 if (getPluginConfig().getPeacefulModeConfig().enable()) {
@@ -215,7 +324,14 @@ public final class MofuAssistant extends JavaPlugin implements Listener {
                                 ^ getPluginConfig().getPeacefulModeConfig().targetWorld().contains(player.getWorld().getName()))
                             break;
 
-                        val playerData = MofuAssistantApi.getInstance().getPlayerData(player);
+                        MofuPlayerData playerData;
+                        try {
+                            playerData = MofuAssistantApi.getInstance().getPlayerData(player);
+                        } catch (PlayerDataLoadException e) {
+                            getLogger().log(Level.WARNING, "Failed to load player data.", e);
+                            player.sendMessage(ChatColor.RED + "[MofuAssistant] プレイヤーデータの読み込みに失敗しました。しばらくしてから再度お試しください。");
+                            break;
+                        }
                         playerData.getSettings().setPeacefulMode(player.getWorld(), !playerData.getSettings().isPeacefulMode(player.getWorld()));
                         val peacefulModeChangeEvent = new PlayerPeacefulModeChangeEvent(player);
                         getServer().getPluginManager().callEvent(peacefulModeChangeEvent);
@@ -254,33 +370,261 @@ public final class MofuAssistant extends JavaPlugin implements Listener {
         return true;
     }
 
+    private boolean onZoneCommand(CommandSender sender, String[] args) {
+        if (args.length < 2)
+            return false;
+
+        switch (args[1]) {
+            case "add":
+                return handleZoneAdd(sender, args);
+            case "remove":
+                return handleZoneRemove(sender, args);
+            case "list":
+                return handleZoneList(sender);
+            default:
+                return false;
+        }
+    }
+
+    private boolean handleZoneAdd(CommandSender sender, String[] args) {
+        if (args.length < 7 || (args.length < 8 && !(sender instanceof Player))) {
+            sender.sendMessage(ChatColor.RED + "Usage: /assistant zone add <name> <x1> <z1> <x2> <z2> [world]");
+            return true;
+        }
+        if (args[2].length() > PeacefulZoneTable.MAX_NAME_LENGTH) {
+            sender.sendMessage(ChatColor.RED + "[MofuAssistant] Zone names must be at most " + PeacefulZoneTable.MAX_NAME_LENGTH + " characters.");
+            return true;
+        }
+        if (peacefulZoneIndex.getZone(args[2]) != null) {
+            sender.sendMessage(ChatColor.RED + "[MofuAssistant] A zone with that name already exists.");
+            return true;
+        }
+
+        String worldName = args.length >= 8 ? args[7] : ((Player) sender).getWorld().getName();
+        if (Bukkit.getWorld(worldName) == null) {
+            sender.sendMessage(ChatColor.RED + "[MofuAssistant] The world does not exist: " + worldName);
+            return true;
+        }
+
+        PeacefulZone zone;
+        try {
+            int x1 = Integer.parseInt(args[3]);
+            int z1 = Integer.parseInt(args[4]);
+            int x2 = Integer.parseInt(args[5]);
+            int z2 = Integer.parseInt(args[6]);
+            zone = new PeacefulZone(args[2], worldName, Math.min(x1, x2), Math.min(z1, z2), Math.max(x1, x2), Math.max(z1, z2));
+        } catch (NumberFormatException e) {
+            sender.sendMessage(ChatColor.RED + "[MofuAssistant] Coordinates must be integers.");
+            return true;
+        }
+
+        // 索引はゾーンが掛かるチャンクごとにバケットを作成するため、広すぎるゾーンは受け付けない
+        int maxChunkArea = getPluginConfig().getZoneConfig().maxChunkArea();
+        if (zone.chunkArea() > maxChunkArea) {
+            sender.sendMessage(ChatColor.RED + "[MofuAssistant] The zone covers " + zone.chunkArea()
+                    + " chunks, but at most " + maxChunkArea + " are allowed.");
+            return true;
+        }
+
+        peacefulZoneTable.runAsync(() -> peacefulZoneTable.insertZone(zone)).whenCompleteAsync((result, throwable) -> {
+            if (throwable != null) {
+                getLogger().log(Level.WARNING, "An error occurred while saving the peaceful zone.", MainThreadExecutor.unwrap(throwable));
+                sender.sendMessage(ChatColor.RED + "[MofuAssistant] Failed to save the zone.");
+                return;
+            }
+            peacefulZoneIndex.add(zone);
+            peacefulPlayerIndex.updateListenerRegistration();
+            sender.sendMessage(ChatColor.GREEN + "[MofuAssistant] Added the peaceful zone: " + zone.name());
+        }, mainThreadExecutor);
+        return true;
+    }
+
+    private boolean handleZoneRemove(CommandSender sender, String[] args) {
+        if (args.length < 3) {
+            sender.sendMessage(ChatColor.RED + "Usage: /assistant zone remove <name>");
+            return true;
+        }
+        if (peacefulZoneIndex.getZone(args[2]) == null) {
+            sender.sendMessage(ChatColor.RED + "[MofuAssistant] The zone does not exist: " + args[2]);
+            return true;
+        }
+
+        String name = args[2];
+        peacefulZoneTable.runAsync(() -> peacefulZoneTable.deleteZone(name)).whenCompleteAsync((result, throwable) -> {
+            if (throwable != null) {
+                getLogger().log(Level.WARNING, "An error occurred while deleting the peaceful zone.", MainThreadExecutor.unwrap(throwable));
+                sender.sendMessage(ChatColor.RED + "[MofuAssistant] Failed to delete the zone.");
+                return;
+            }
+            peacefulZoneIndex.remove(name);
+            peacefulPlayerIndex.updateListenerRegistration();
+            sender.sendMessage(ChatColor.GREEN + "[MofuAssistant] Removed the peaceful zone: " + name);
+        }, mainThreadExecutor);
+        return true;
+    }
+
+    private boolean handleZoneList(CommandSender sender) {
+        sender.sendMessage(ChatColor.GREEN + "[MofuAssistant] Peaceful zones:");
+        for (PeacefulZone zone : peacefulZoneIndex.getZones())
+            sender.sendMessage(ChatColor.GRAY + zone.name() + ": " + zone.world()
+                    + " (" + zone.minX() + ", " + zone.minZ() + ") - (" + zone.maxX() + ", " + zone.maxZ() + ")");
+        return true;
+    }
+
+    private boolean handleExport(CommandSender sender, String[] args) {
+        if (args.length < 2) {
+            sender.sendMessage(ChatColor.RED + "Usage: /assistant export <jsonl|binary> [file]");
+            return true;
+        }
+
+        PlayerDataTransfer.Format format;
+        switch (args[1]) {
+            case "jsonl":
+                format = PlayerDataTransfer.Format.JSONL;
+                break;
+            case "binary":
+                format = PlayerDataTransfer.Format.BINARY;
+                break;
+            default:
+                sender.sendMessage(ChatColor.RED + "Usage: /assistant export <jsonl|binary> [file]");
+                return true;
+        }
+        String fileName = args.length >= 3 ? args[2] : "playerdata-" + System.currentTimeMillis();
+        if (!fileName.endsWith(format.getExtension()))
+            fileName += format.getExtension();
+        val file = playerDataTransfer.resolve(fileName);
+        if (file == null) {
+            sender.sendMessage(ChatColor.RED + "[MofuAssistant] Invalid file name: " + fileName);
+            return true;
+        }
+
+        val future = playerDataTransfer.exportAsync(file, format);
+        if (future == null) {
+            sender.sendMessage(ChatColor.RED + "[MofuAssistant] Another export or import is already running.");
+            return true;
+        }
+        sender.sendMessage(ChatColor.GREEN + "[MofuAssistant] Exporting player data to " + file.getName() + "...");
+        future.whenComplete((count, throwable) -> Bukkit.getScheduler().runTask(this, () -> {
+            if (throwable != null) {
+                getLogger().log(Level.WARNING, "An error occurred while exporting player data.", throwable);
+                sender.sendMessage(ChatColor.RED + "[MofuAssistant] Failed to export player data.");
+            } else {
+                sender.sendMessage(ChatColor.GREEN + "[MofuAssistant] Exported " + count + " player data rows to " + file.getName() + ".");
+            }
+        }));
+        return true;
+    }
+
+    private boolean handleImport(CommandSender sender, String[] args) {
+        if (args.length < 2) {
+            sender.sendMessage(ChatColor.RED + "Usage: /assistant import <file>");
+            return true;
+        }
+        // オンラインのプレイヤーのデータはメモリ上のものが優先され、読み込んだデータが上書きされるため
+        if (!Bukkit.getOnlinePlayers().isEmpty()) {
+            sender.sendMessage(ChatColor.RED + "[MofuAssistant] Player data can only be imported while no players are online.");
+            return true;
+        }
+
+        val format = PlayerDataTransfer.Format.fromFileName(args[1]);
+        val file = playerDataTransfer.resolve(args[1]);
+        if (format == null || file == null || !file.isFile()) {
+            sender.sendMessage(ChatColor.RED + "[MofuAssistant] The file does not exist or is not a .jsonl or .bin.gz file: " + args[1]);
+            return true;
+        }
+
+        val future = playerDataTransfer.importAsync(file, format);
+        if (future == null) {
+            sender.sendMessage(ChatColor.RED + "[MofuAssistant] Another export or import is already running.");
+            return true;
+        }
+        sender.sendMessage(ChatColor.GREEN + "[MofuAssistant] Importing player data from " + file.getName() + "...");
+        future.whenComplete((count, throwable) -> Bukkit.getScheduler().runTask(this, () -> {
+            // 失敗した場合もそれまでのバッチは反映されているため、キャッシュは破棄する
+            MofuAssistantApi.getInstance().invalidateOfflineCache();
+            if (throwable != null) {
+                getLogger().log(Level.WARNING, "An error occurred while importing player data.", throwable);
+                sender.sendMessage(ChatColor.RED + "[MofuAssistant] Failed to import player data. Rows imported before the error were kept.");
+            } else {
+                sender.sendMessage(ChatColor.GREEN + "[MofuAssistant] Imported " + count + " player data rows from " + file.getName() + ".");
+            }
+        }));
+        return true;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onAsyncPlayerPreLoginEvent(AsyncPlayerPreLoginEvent event) {
+        // イベントハンドラからデータベースを参照しないよう、ログイン前に読み込んでおく
+        if (event.getLoginResult() == AsyncPlayerPreLoginEvent.Result.ALLOWED)
+            MofuAssistantApi.getInstance().preloadPlayerData(event.getUniqueId(), event.getName());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerLoginEvent(PlayerLoginEvent event) {
+        if (event.getResult() != PlayerLoginEvent.Result.ALLOWED)
+            MofuAssistantApi.getInstance().dropStoreData(event.getPlayer().getUniqueId());
+    }
+
     @EventHandler
     public void onPlayerQuitEvent(PlayerQuitEvent event) {
-        MofuAssistantApi.getInstance().dropStoreData(event.getPlayer());
+        MofuAssistantApi.getInstance().dropStoreData(event.getPlayer().getUniqueId());
+        playerDataWriteQueue.flushAsync();
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onWorldUnloadEvent(WorldUnloadEvent event) {
+        WorldIndex.release(event.getWorld());
     }
 
     @EventHandler(priority = EventPriority.MONITOR)
     public void onPlayerPeacefulModeChangeEvent(PlayerPeacefulModeChangeEvent event) {
-        if (MofuAssistantApi.getInstance().getPlayerData(event.getPlayer()).getSettings().isPeacefulMode(event.getPlayer().getWorld())) {
-            MobHelper.getOffensive(event.getPlayer().getNearbyEntities(40, 40, 40)).forEach(
-                    entity -> {
-                        // 既にターゲット中のMobのターゲットを解除
-                        if (entity.getTarget() instanceof Player target
-                                && target.equals(event.getPlayer()))
-                            entity.setTarget(null);
-                    }
-            );
-        }
+        // 既にターゲット中のMobのターゲットを解除
+        if (MofuAssistantApi.getInstance().getPlayerData(event.getPlayer()).getSettings().isPeacefulMode(event.getPlayer().getWorld()))
+            deaggroScanner.request(event.getPlayer());
+    }
+
+    public PluginMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * データベースなどの非同期処理の結果をメインスレッドで処理するためのExecutorを返します。
+     *
+     * @return メインスレッドで処理を実行するExecutor
+     */
+    public MainThreadExecutor getMainThreadExecutor() {
+        return mainThreadExecutor;
     }
 
     public MofuAssistantConfig getPluginConfig() {
         return config;
     }
 
+    public DatabaseConnector getConnector() {
+        return connector;
+    }
+
     public MofuAssistantTable getMofuAssistantTable() {
         return mofuAssistantTable;
     }
 
+    public PlayerDataWriteQueue getPlayerDataWriteQueue() {
+        return playerDataWriteQueue;
+    }
+
+    public PlayerDataBatchLoader getPlayerDataBatchLoader() {
+        return playerDataBatchLoader;
+    }
+
+    /**
+     * PDCに保存する設定の場合に、PDCのストレージを返します。
+     *
+     * @return PDCのストレージ、データベースに保存する設定の場合はnull
+     */
+    public PersistentDataPlayerStorage getPersistentDataStorage() {
+        return persistentDataStorage;
+    }
+
     public CommunityDistributionTable getCommunityDistributionTable() {
         return communityDistributionTable;
     }
@@ -304,4 +648,12 @@ public final class MofuAssistant extends JavaPlugin implements Listener {
     public DistributionScheduler getDistributionScheduler() {
         return distributionScheduler;
     }
+
+    public PeacefulZoneIndex getPeacefulZoneIndex() {
+        return peacefulZoneIndex;
+    }
+
+    public PeacefulPlayerIndex getPeacefulPlayerIndex() {
+        return peacefulPlayerIndex;
+    }
 }
@@ -20,17 +20,31 @@ import lombok.NonNull;
 import lombok.val;
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
+import org.jetbrains.annotations.Nullable;
 import page.nafuchoco.mofu.mofuassistant.data.MofuPlayerData;
+import page.nafuchoco.mofu.mofuassistant.data.OfflinePlayerDataCache;
+import page.nafuchoco.mofu.mofuassistant.data.PersistentDataPlayerStorage;
+import page.nafuchoco.mofu.mofuassistant.data.PlayerDataLoadException;
+import page.nafuchoco.mofu.mofuassistant.database.DatabaseExecutor;
 
 import java.sql.SQLException;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.UUID;
+import java.util.*;
+import java.util.concurrent.*;
 import java.util.logging.Level;
 
 public class MofuAssistantApi {
+    // 読み込みに失敗したプレイヤーのデータを再度読み込むまでの間隔
+    private static final long LOAD_RETRY_DELAY_TICKS = 100;
+    // 接続の取得待ちに加えて、クエリの実行に許容する時間
+    private static final long LOAD_QUERY_MARGIN_MILLIS = 5000;
+
     private final MofuAssistant mofuAssistant;
-    private final Map<Player, MofuPlayerData> playerStore;
+    // ログイン前の非同期スレッドから書き込まれるため、スレッドセーフなMapを使用する
+    private final Map<UUID, MofuPlayerData> playerStore;
+    private final OfflinePlayerDataCache offlineCache;
+    // PDCに保存する設定の場合のみ使用される
+    private final PersistentDataPlayerStorage persistentDataStorage;
+    private final long loadTimeoutMillis;
 
     public static MofuAssistantApi getInstance() {
         return ApiInstanceHolder.INSTANCE;
@@ -38,39 +52,401 @@ public class MofuAssistantApi {
 
     public MofuAssistantApi(MofuAssistant mofuAssistant) {
         this.mofuAssistant = mofuAssistant;
-        playerStore = new HashMap<>();
+        playerStore = new ConcurrentHashMap<>();
+        val cacheConfig = mofuAssistant.getPluginConfig().getPlayerDataCacheConfig();
+        offlineCache = new OfflinePlayerDataCache(cacheConfig.offlineMaxSize(), cacheConfig.offlineTtlSeconds() * 1000L);
+        persistentDataStorage = mofuAssistant.getPersistentDataStorage();
+        loadTimeoutMillis = mofuAssistant.getPluginConfig().getPoolConfig().connectionTimeoutMillis()
+                + mofuAssistant.getPluginConfig().getInitConfig().getBatchWindowMillis() + LOAD_QUERY_MARGIN_MILLIS;
+
+        val metrics = mofuAssistant.getMetrics();
+        metrics.gauge("playerdata.offlineCache.hits", () -> offlineCache.getStats().hits());
+        metrics.gauge("playerdata.offlineCache.misses", () -> offlineCache.getStats().misses());
+        metrics.gauge("playerdata.offlineCache.evictions", () -> offlineCache.getStats().evictions());
+        metrics.gauge("playerdata.offlineCache.size", () -> offlineCache.getStats().size());
     }
 
+    /**
+     * オンラインのプレイヤーのデータを返します。
+     * 通常はログイン前に読み込み済みのデータを返しますが、読み込みが完了していない場合は
+     * データベースから同期的に読み込むため、呼び出したスレッドをブロックします。
+     * PDCに保存する設定の場合はPDCから読み込み、未移行のプレイヤーのみデータベースを参照します。
+     * PDCはメインスレッドからのみ操作できるため、この場合にメインスレッド以外から呼び出すと読み込み済みのデータのみを返します。
+     *
+     * @param player データを取得するプレイヤー
+     * @return プレイヤーデータ、PDCに保存する設定でメインスレッド以外から呼び出し、読み込みが完了していない場合はnull
+     * (メインスレッドから呼び出した場合はnullを返しません)
+     * @throws PlayerDataLoadException データベースからの読み込みに失敗した場合
+     */
+    @Nullable
     public MofuPlayerData getPlayerData(@NonNull Player player) {
-        var playerData = playerStore.get(player);
+        var playerData = getLoadedPlayerData(player);
         if (playerData == null) {
-            playerData = getPlayerData(player.getUniqueId());
-            playerStore.put(player, playerData);
+            if (persistentDataStorage != null) {
+                // メインスレッドの処理を待機すると、メインスレッドがこのスレッドを待機している場合にデッドロックするため待たない
+                if (!Bukkit.isPrimaryThread())
+                    return null;
+                return migratePlayerData(player, readDatabase(player.getUniqueId()));
+            }
+
+            playerData = loadOnlinePlayerData(player.getUniqueId(), player.getName());
+            val existing = playerStore.putIfAbsent(player.getUniqueId(), playerData);
+            if (existing != null)
+                playerData = existing;
         }
 
         return playerData;
     }
 
+    /**
+     * 読み込み済みのプレイヤーデータを返します。このメソッドはブロックしません。
+     *
+     * @param player データを取得するプレイヤー
+     * @return プレイヤーデータ、読み込みが完了していない場合はnull
+     */
+    @Nullable
+    public MofuPlayerData getLoadedPlayerData(@NonNull Player player) {
+        var playerData = playerStore.get(player.getUniqueId());
+        // PDCはメモリ上にあるため、移行済みのプレイヤーはその場で読み込む
+        if (playerData == null && persistentDataStorage != null && Bukkit.isPrimaryThread()) {
+            val settings = persistentDataStorage.load(player);
+            if (settings != null) {
+                playerData = new MofuPlayerData(player.getUniqueId(), player.getName(), settings);
+                val existing = playerStore.putIfAbsent(player.getUniqueId(), playerData);
+                if (existing != null)
+                    playerData = existing;
+            }
+        }
+        return playerData;
+    }
+
+    /**
+     * プレイヤーデータを返します。
+     * オンラインのプレイヤーは保持しているデータを、オフラインのプレイヤーはキャッシュまたはデータベースから読み込んだデータを返します。
+     *
+     * @param uuid プレイヤーのUUID
+     * @return プレイヤーデータ
+     * @throws PlayerDataLoadException データベースからの読み込みに失敗した場合 (失敗した結果はキャッシュされません)
+     */
     public MofuPlayerData getPlayerData(UUID uuid) {
-        var playerData = mofuAssistant.getMofuAssistantTable().getPlayerData(uuid);
+        var playerData = playerStore.get(uuid);
+        if (playerData != null)
+            return playerData;
+
+        playerData = offlineCache.get(uuid);
         if (playerData == null) {
-            val offlinePlayer = Bukkit.getOfflinePlayer(uuid);
-            playerData = new MofuPlayerData(offlinePlayer.getUniqueId(), offlinePlayer.getName(), new MofuPlayerData.PlayerSettings());
+            playerData = loadPlayerData(uuid, null);
+            offlineCache.put(uuid, playerData);
+        }
+        return playerData;
+    }
+
+    /**
+     * プレイヤーデータを非同期で取得します。
+     * メモリ上に存在する場合は完了済みのFutureを返し、それ以外は同時に要求された他の読み込みとまとめて読み込みます。
+     *
+     * @param uuid プレイヤーのUUID
+     * @return プレイヤーデータを返すFuture
+     */
+    public CompletableFuture<MofuPlayerData> getPlayerDataAsync(UUID uuid) {
+        val playerData = findInMemory(uuid);
+        if (playerData != null)
+            return CompletableFuture.completedFuture(playerData);
+        if (persistentDataStorage != null)
+            return CompletableFuture.completedFuture(getPlayerData(uuid));
+        return mofuAssistant.getPlayerDataBatchLoader().load(uuid).thenApplyAsync(loaded -> {
+            // 読み込み中にログインしたプレイヤーは、オンラインのデータを優先する
+            val onlineData = playerStore.get(uuid);
+            if (onlineData != null)
+                return onlineData;
+
+            val result = loaded != null ? loaded : registerPlayerData(uuid, null);
+            offlineCache.put(uuid, result);
+            return result;
+        }, mofuAssistant.getConnector().getExecutor());
+    }
+
+    /**
+     * 複数のプレイヤーデータをまとめて非同期で取得します。
+     * メモリ上に存在するデータはそのまま使用し、残りは1回のクエリで読み込みます。
+     * データが存在しないプレイヤーは結果に含まれず、新規の登録も行いません。
+     *
+     * @param uuids プレイヤーのUUID
+     * @return UUIDとプレイヤーデータのMapを返すFuture
+     */
+    public CompletableFuture<Map<UUID, MofuPlayerData>> getPlayerData(Collection<UUID> uuids) {
+        Map<UUID, MofuPlayerData> result = new HashMap<>();
+        Set<UUID> missing = new HashSet<>();
+        for (UUID uuid : uuids) {
+            val playerData = findInMemory(uuid);
+            if (playerData != null)
+                result.put(uuid, playerData);
+            else
+                missing.add(uuid);
+        }
+        // PDCに保存する設定の場合、オフラインのプレイヤーの設定は参照できない
+        if (missing.isEmpty() || persistentDataStorage != null)
+            return CompletableFuture.completedFuture(result);
+
+        // 同時に要求された他の読み込みとまとめるため、ローダーを経由して読み込む
+        Map<UUID, CompletableFuture<MofuPlayerData>> futures = new HashMap<>();
+        for (UUID uuid : missing)
+            futures.put(uuid, mofuAssistant.getPlayerDataBatchLoader().load(uuid));
+        return CompletableFuture.allOf(futures.values().toArray(new CompletableFuture[0])).thenApply(v -> {
+            futures.forEach((uuid, future) -> {
+                val playerData = future.join();
+                if (playerData == null)
+                    return;
+
+                // 読み込み中にログインしたプレイヤーは、オンラインのデータを優先する
+                val onlineData = playerStore.get(uuid);
+                if (onlineData != null) {
+                    result.put(uuid, onlineData);
+                } else {
+                    offlineCache.put(uuid, playerData);
+                    result.put(uuid, playerData);
+                }
+            });
+            return result;
+        });
+    }
+
+    private MofuPlayerData findInMemory(UUID uuid) {
+        var playerData = playerStore.get(uuid);
+        if (playerData == null)
+            playerData = mofuAssistant.getPlayerDataWriteQueue().getPending(uuid);
+        if (playerData == null)
+            playerData = offlineCache.get(uuid);
+        return playerData;
+    }
+
+    /**
+     * オフラインのプレイヤーデータのキャッシュの統計情報を返します。
+     *
+     * @return キャッシュの統計情報
+     */
+    public OfflinePlayerDataCache.Stats getOfflineCacheStats() {
+        return offlineCache.getStats();
+    }
+
+    /**
+     * オフラインのプレイヤーのデータのキャッシュを破棄します。
+     * データベースの内容を直接変更した後に使用します。
+     */
+    public void invalidateOfflineCache() {
+        offlineCache.clear();
+    }
+
+    /**
+     * プレイヤーデータをデータベースから読み込み、オンラインのプレイヤーのデータとして保持します。
+     * AsyncPlayerPreLoginEventなど、メインスレッド以外から呼び出すことを想定しています。
+     * PDCに保存する設定の場合、ログイン前はPDCを参照できないため何もしません。
+     * 読み込みに失敗した場合は何も保持せず、ログイン後にloadPlayerDataAsyncで再度読み込みます。
+     *
+     * @param uuid       プレイヤーのUUID
+     * @param playerName プレイヤー名 (データが存在せず新規に登録する場合に使用)
+     */
+    public void preloadPlayerData(UUID uuid, String playerName) {
+        if (persistentDataStorage != null)
+            return;
+        try {
+            storeOnlinePlayerData(uuid, playerName);
+        } catch (PlayerDataLoadException e) {
+            mofuAssistant.getLogger().log(Level.WARNING, "Failed to preload player data. It will be loaded again after login.", e);
+        }
+    }
+
+    private void storeOnlinePlayerData(UUID uuid, String playerName) {
+        if (!playerStore.containsKey(uuid))
+            playerStore.putIfAbsent(uuid, loadOnlinePlayerData(uuid, playerName));
+    }
+
+    /**
+     * 複数のプレイヤーのデータを1回のクエリでまとめて読み込み、オンラインのプレイヤーのデータとして保持します。
+     * プラグインの再読み込み時など、既にログインしているプレイヤーのデータを読み込む場合に使用します。
+     * データが存在しないプレイヤーは新規に登録されます。
+     *
+     * @param players UUIDとプレイヤー名のMap
+     * @return 読み込みが完了した時に完了するFuture
+     */
+    public CompletableFuture<Void> warmUpPlayerData(Map<UUID, String> players) {
+        return CompletableFuture.runAsync(() -> {
+            Map<UUID, MofuPlayerData> loaded;
             try {
-                mofuAssistant.getMofuAssistantTable().registerPlayer(playerData);
+                loaded = mofuAssistant.getMofuAssistantTable().getPlayerData(players.keySet());
             } catch (SQLException e) {
-                mofuAssistant.getLogger().log(Level.WARNING, "Failed to register the player data.", e);
+                throw new CompletionException(e);
             }
+            players.forEach((uuid, playerName) -> {
+                if (playerStore.containsKey(uuid))
+                    return;
+                var playerData = mofuAssistant.getPlayerDataWriteQueue().getPending(uuid);
+                if (playerData == null)
+                    playerData = loaded.get(uuid);
+                if (playerData == null)
+                    playerData = registerPlayerData(uuid, playerName);
+                playerStore.putIfAbsent(uuid, playerData);
+            });
+        }, mofuAssistant.getConnector().getExecutor());
+    }
+
+    /**
+     * プレイヤーデータを非同期で読み込みます。
+     * 事前読み込みが完了していなかった場合の代替として使用します。
+     * 読み込みに失敗した場合は、プレイヤーがログアウトするまで一定の間隔で再度読み込みます。
+     *
+     * @param player   データを読み込むプレイヤー
+     * @param callback 読み込み完了後にメインスレッドで実行される処理 (プレイヤーがログアウトしていた場合は実行されない)
+     */
+    public void loadPlayerDataAsync(@NonNull Player player, Runnable callback) {
+        val uuid = player.getUniqueId();
+        val playerName = player.getName();
+        if (persistentDataStorage != null) {
+            // 未移行のプレイヤーのデータをデータベースから読み込み、メインスレッドでPDCに移す
+            Bukkit.getScheduler().runTaskAsynchronously(mofuAssistant, () -> {
+                MofuPlayerData storedData;
+                try {
+                    storedData = readDatabase(uuid);
+                } catch (PlayerDataLoadException e) {
+                    // 初期設定をPDCに保存すると、データベースの設定が移行されなくなるため何もしない
+                    retryLoadLater(uuid, callback, e);
+                    return;
+                }
+                Bukkit.getScheduler().runTask(mofuAssistant, () -> {
+                    val onlinePlayer = Bukkit.getPlayer(uuid);
+                    if (onlinePlayer != null) {
+                        migratePlayerData(onlinePlayer, storedData);
+                        callback.run();
+                    }
+                });
+            });
+            return;
+        }
+
+        Bukkit.getScheduler().runTaskAsynchronously(mofuAssistant, () -> {
+            try {
+                storeOnlinePlayerData(uuid, playerName);
+            } catch (PlayerDataLoadException e) {
+                retryLoadLater(uuid, callback, e);
+                return;
+            }
+            Bukkit.getScheduler().runTask(mofuAssistant, () -> {
+                // 読み込み中にログアウトしていた場合は破棄する
+                if (Bukkit.getPlayer(uuid) == null)
+                    dropStoreData(uuid);
+                else
+                    callback.run();
+            });
+        });
+    }
+
+    private void retryLoadLater(UUID uuid, Runnable callback, PlayerDataLoadException e) {
+        mofuAssistant.getLogger().log(Level.WARNING, "Failed to load player data. Retrying in "
+                + LOAD_RETRY_DELAY_TICKS + " ticks.", e);
+        if (!mofuAssistant.isEnabled())
+            return;
+        Bukkit.getScheduler().runTaskLater(mofuAssistant, () -> {
+            val onlinePlayer = Bukkit.getPlayer(uuid);
+            if (onlinePlayer != null)
+                loadPlayerDataAsync(onlinePlayer, callback);
+        }, LOAD_RETRY_DELAY_TICKS);
+    }
+
+    /**
+     * データベースに保存されている設定をPDCに移し、オンラインのプレイヤーのデータとして保持します。
+     * メインスレッドから呼び出す必要があります。
+     *
+     * @param player     対象のプレイヤー
+     * @param storedData データベースから読み込んだデータ、存在しない場合はnull
+     * @return プレイヤーデータ
+     */
+    private MofuPlayerData migratePlayerData(Player player, MofuPlayerData storedData) {
+        // 読み込み中に設定が保存された場合は、そちらを優先する
+        var settings = persistentDataStorage.load(player);
+        if (settings == null) {
+            settings = storedData != null ? storedData.getSettings() : new MofuPlayerData.PlayerSettings();
+            persistentDataStorage.save(player, settings);
         }
 
+        val playerData = new MofuPlayerData(player.getUniqueId(), player.getName(), settings);
+        val existing = playerStore.putIfAbsent(player.getUniqueId(), playerData);
+        return existing != null ? existing : playerData;
+    }
+
+    private MofuPlayerData loadOnlinePlayerData(UUID uuid, String playerName) {
+        // 他のサーバーで変更されている可能性があるため、ログイン時は必ずデータベースから読み直す
+        offlineCache.invalidate(uuid);
+        return loadPlayerData(uuid, playerName);
+    }
+
+    /**
+     * プレイヤーデータを読み込み、存在しない場合は新規に登録します。
+     *
+     * @throws PlayerDataLoadException 読み込みに失敗した場合 (この場合は登録を行いません)
+     */
+    private MofuPlayerData loadPlayerData(UUID uuid, String playerName) {
+        // PDCに保存する設定の場合、オフラインのプレイヤーの設定は参照できないため初期設定を返す
+        if (persistentDataStorage != null) {
+            if (playerName == null)
+                playerName = Bukkit.getOfflinePlayer(uuid).getName();
+            return new MofuPlayerData(uuid, playerName, new MofuPlayerData.PlayerSettings());
+        }
+
+        var playerData = readDatabase(uuid);
+        if (playerData == null)
+            playerData = registerPlayerData(uuid, playerName);
+
         if (mofuAssistant.getPluginConfig().isDebug())
             mofuAssistant.getLogger().log(Level.INFO, playerData.toString());
         return playerData;
     }
 
+    /**
+     * データベースに保存されているプレイヤーデータを読み込みます。
+     *
+     * @return プレイヤーデータ、存在しない場合はnull
+     * @throws PlayerDataLoadException 読み込みに失敗したか、時間内に完了しなかった場合
+     */
+    private MofuPlayerData readDatabase(UUID uuid) {
+        // 書き込み待ちの変更がある場合は、データベースの内容よりもそちらを優先する
+        val playerData = mofuAssistant.getPlayerDataWriteQueue().getPending(uuid);
+        if (playerData != null)
+            return playerData;
+
+        try {
+            // メインスレッドでは待機時間を挟まずに読み込む
+            // データベース処理用のスレッドでは、バッチの処理を待機するとスレッドが不足してデッドロックするため直接読み込む
+            if (Bukkit.isPrimaryThread() || DatabaseExecutor.isDatabaseThread())
+                return mofuAssistant.getMofuAssistantTable().getPlayerData(uuid);
+            return mofuAssistant.getPlayerDataBatchLoader().load(uuid).get(loadTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (SQLException | TimeoutException e) {
+            throw new PlayerDataLoadException(uuid, e);
+        } catch (ExecutionException e) {
+            throw new PlayerDataLoadException(uuid, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PlayerDataLoadException(uuid, e);
+        }
+    }
+
+    private MofuPlayerData registerPlayerData(UUID uuid, String playerName) {
+        if (playerName == null)
+            playerName = Bukkit.getOfflinePlayer(uuid).getName();
+        val playerData = new MofuPlayerData(uuid, playerName, new MofuPlayerData.PlayerSettings());
+        try {
+            mofuAssistant.getMofuAssistantTable().registerPlayer(playerData);
+        } catch (SQLException e) {
+            mofuAssistant.getLogger().log(Level.WARNING, "Failed to register the player data.", e);
+        }
+        return playerData;
+    }
+
 
-    void dropStoreData(Player player) {
-        playerStore.remove(player);
+    void dropStoreData(UUID uuid) {
+        // ログアウト直後の参照に備えて、オフラインのキャッシュに移す
+        val playerData = playerStore.remove(uuid);
+        if (playerData != null)
+            offlineCache.put(uuid, playerData);
     }
 
 
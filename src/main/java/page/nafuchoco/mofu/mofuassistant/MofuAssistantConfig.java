@@ -18,16 +18,29 @@ package page.nafuchoco.mofu.mofuassistant;
 
 import lombok.val;
 import org.bukkit.configuration.file.FileConfiguration;
+import page.nafuchoco.mofu.mofuassistant.data.MofuPlayerData;
 import page.nafuchoco.mofu.mofuassistant.database.DatabaseConnector;
+import page.nafuchoco.mofu.mofuassistant.peaceful.PeacefulRuleSet;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 public class MofuAssistantConfig {
     private static final MofuAssistant instance = MofuAssistant.getInstance();
     private InitConfig initConfig;
+    private PoolConfig poolConfig;
+    private SQLiteConfig sqliteConfig;
+    private PlayerDataCacheConfig playerDataCacheConfig;
     private PeacefulModeConfig peacefulModeConfig;
+    private MobClassificationConfig mobClassificationConfig;
+    private DeaggroConfig deaggroConfig;
+    private SweeperConfig sweeperConfig;
+    private SpawnSuppressionConfig spawnSuppressionConfig;
+    private ZoneConfig zoneConfig;
+    // イベントスレッドからロックなしで参照されるため、構築済みのインスタンスを丸ごと差し替える
+    private volatile PeacefulRuleSet peacefulRuleSet;
     private List<MigrationConfig> migrationConfigs = new ArrayList<>();
 
     private boolean debug;
@@ -36,6 +49,7 @@ public class MofuAssistantConfig {
         instance.reloadConfig();
         FileConfiguration config = instance.getConfig();
 
+        val storageType = StorageType.valueOf(config.getString("initialization.storage", "SQL"));
         val databaseType = DatabaseConnector.DatabaseType.valueOf(config.getString("initialization.database.type"));
         val address = config.getString("initialization.database.address");
         val port = config.getInt("initialization.database.port", 3306);
@@ -43,13 +57,69 @@ public class MofuAssistantConfig {
         val username = config.getString("initialization.database.username");
         val password = config.getString("initialization.database.password");
         val tablePrefix = config.getString("initialization.database.tablePrefix");
-        initConfig = new InitConfig(databaseType, address, port, database, username, password, tablePrefix);
+        val flushIntervalTicks = config.getInt("initialization.database.flushIntervalTicks", 100);
+        val batchWindowMillis = config.getInt("initialization.database.batchWindowMillis", 5);
+        val batchMaxSize = config.getInt("initialization.database.batchMaxSize", 200);
+        initConfig = new InitConfig(storageType, databaseType, address, port, database, username, password, tablePrefix,
+                flushIntervalTicks, batchWindowMillis, batchMaxSize);
+
+        val poolMaximumSize = config.getInt("initialization.database.pool.maximumPoolSize", 10);
+        val poolMinimumIdle = config.getInt("initialization.database.pool.minimumIdle", -1);
+        val poolConnectionTimeout = config.getLong("initialization.database.pool.connectionTimeoutMillis", 30000);
+        val poolValidationTimeout = config.getLong("initialization.database.pool.validationTimeoutMillis", 5000);
+        val poolLeakDetectionThreshold = config.getLong("initialization.database.pool.leakDetectionThresholdMillis", 0);
+        Map<String, String> driverProperties = new LinkedHashMap<>();
+        val driverPropertiesSection = config.getConfigurationSection("initialization.database.driverProperties");
+        if (driverPropertiesSection != null)
+            driverPropertiesSection.getValues(false).forEach((key, value) -> driverProperties.put(key, String.valueOf(value)));
+        poolConfig = new PoolConfig(poolMaximumSize, poolMinimumIdle, poolConnectionTimeout, poolValidationTimeout,
+                poolLeakDetectionThreshold, driverProperties);
+
+        val sqliteWalMode = config.getBoolean("initialization.database.sqlite.walMode", false);
+        val sqliteReaderPoolSize = config.getInt("initialization.database.sqlite.readerPoolSize", 4);
+        val sqliteMmapSizeMb = config.getInt("initialization.database.sqlite.mmapSizeMb", 64);
+        val sqliteCacheSizeKb = config.getInt("initialization.database.sqlite.cacheSizeKb", 8192);
+        val sqliteBusyTimeoutMillis = config.getInt("initialization.database.sqlite.busyTimeoutMillis", 5000);
+        sqliteConfig = new SQLiteConfig(sqliteWalMode, sqliteReaderPoolSize, sqliteMmapSizeMb, sqliteCacheSizeKb, sqliteBusyTimeoutMillis);
+
+        val offlineCacheMaxSize = config.getInt("playerDataCache.offlineMaxSize", 500);
+        val offlineCacheTtlSeconds = config.getInt("playerDataCache.offlineTtlSeconds", 300);
+        playerDataCacheConfig = new PlayerDataCacheConfig(offlineCacheMaxSize, offlineCacheTtlSeconds);
 
         val peacefulModeEnable = config.getBoolean("peacefulMode.enable");
         val worldWhitelist = config.getBoolean("peacefulMode.worldWhitelist");
         val targetWorld = config.getStringList("peacefulMode.targetWorld");
         val keepChangeWorld = config.getBoolean("peacefulMode.keepChangeWorld");
         peacefulModeConfig = new PeacefulModeConfig(peacefulModeEnable, worldWhitelist, targetWorld, keepChangeWorld);
+        MofuPlayerData.PlayerSettings.setKeepChangeWorld(keepChangeWorld);
+
+        val offensiveAdd = config.getStringList("peacefulMode.mobClassification.offensive.add");
+        val offensiveRemove = config.getStringList("peacefulMode.mobClassification.offensive.remove");
+        val hostileAdd = config.getStringList("peacefulMode.mobClassification.hostile.add");
+        val hostileRemove = config.getStringList("peacefulMode.mobClassification.hostile.remove");
+        mobClassificationConfig = new MobClassificationConfig(offensiveAdd, offensiveRemove, hostileAdd, hostileRemove);
+        MobHelper.reload(mobClassificationConfig);
+
+        val deaggroRadius = config.getInt("peacefulMode.deaggro.radius", 40);
+        val deaggroTickBudget = Math.max(0.1, config.getDouble("peacefulMode.deaggro.tickBudgetMillis", 2.0));
+        deaggroConfig = new DeaggroConfig(deaggroRadius, deaggroTickBudget);
+
+        val sweeperInterval = config.getInt("peacefulMode.sweeper.intervalTicks", 40);
+        val sweeperEntityBudget = config.getInt("peacefulMode.sweeper.entityBudget", 200);
+        val sweeperRadius = config.getInt("peacefulMode.sweeper.radius", 32);
+        sweeperConfig = new SweeperConfig(sweeperInterval, sweeperEntityBudget, sweeperRadius);
+
+        val spawnSuppressionEnable = config.getBoolean("peacefulMode.spawnSuppression.enable", false);
+        val spawnSuppressionRadius = config.getInt("peacefulMode.spawnSuppression.radius", 48);
+        spawnSuppressionConfig = new SpawnSuppressionConfig(spawnSuppressionEnable, spawnSuppressionRadius);
+
+        val zoneMaxChunkArea = config.getInt("peacefulMode.zones.maxChunkArea", 4096);
+        zoneConfig = new ZoneConfig(zoneMaxChunkArea);
+
+        val blockedEffects = config.getStringList("peacefulMode.rules.blockedEffects");
+        val cancelledTargetReasons = config.getStringList("peacefulMode.rules.cancelledTargetReasons");
+        val blockedDamagers = config.getStringList("peacefulMode.rules.blockedDamagers");
+        peacefulRuleSet = PeacefulRuleSet.compile(new PeacefulRulesConfig(blockedEffects, cancelledTargetReasons, blockedDamagers));
 
         List<MigrationConfig> migrationConfigs = new ArrayList<>();
         config.getMapList("dataMigrationSupport").forEach(s -> {
@@ -77,10 +147,46 @@ public class MofuAssistantConfig {
         return initConfig;
     }
 
+    public PoolConfig getPoolConfig() {
+        return poolConfig;
+    }
+
+    public SQLiteConfig getSQLiteConfig() {
+        return sqliteConfig;
+    }
+
+    public PlayerDataCacheConfig getPlayerDataCacheConfig() {
+        return playerDataCacheConfig;
+    }
+
     public PeacefulModeConfig getPeacefulModeConfig() {
         return peacefulModeConfig;
     }
 
+    public MobClassificationConfig getMobClassificationConfig() {
+        return mobClassificationConfig;
+    }
+
+    public DeaggroConfig getDeaggroConfig() {
+        return deaggroConfig;
+    }
+
+    public SweeperConfig getSweeperConfig() {
+        return sweeperConfig;
+    }
+
+    public SpawnSuppressionConfig getSpawnSuppressionConfig() {
+        return spawnSuppressionConfig;
+    }
+
+    public ZoneConfig getZoneConfig() {
+        return zoneConfig;
+    }
+
+    public PeacefulRuleSet getPeacefulRuleSet() {
+        return peacefulRuleSet;
+    }
+
     public List<MigrationConfig> getMigrationConfigs() {
         return migrationConfigs;
     }
@@ -89,9 +195,14 @@ public class MofuAssistantConfig {
         return debug;
     }
 
-    public record InitConfig(DatabaseConnector.DatabaseType databaseType,
+    public record InitConfig(StorageType storageType, DatabaseConnector.DatabaseType databaseType,
                              String address, int port, String database, String username,
-                             String password, String tablePrefix) {
+                             String password, String tablePrefix, int flushIntervalTicks,
+                             int batchWindowMillis, int batchMaxSize) {
+
+        public StorageType getStorageType() {
+            return storageType;
+        }
 
         public DatabaseConnector.DatabaseType getDatabaseType() {
             return databaseType;
@@ -120,12 +231,60 @@ public class MofuAssistantConfig {
         public String getTablePrefix() {
             return tablePrefix;
         }
+
+        public int getFlushIntervalTicks() {
+            return flushIntervalTicks;
+        }
+
+        public int getBatchWindowMillis() {
+            return batchWindowMillis;
+        }
+
+        public int getBatchMaxSize() {
+            return batchMaxSize;
+        }
+    }
+
+    public enum StorageType {
+        SQL, PDC
+    }
+
+    public record PoolConfig(int maximumPoolSize, int minimumIdle, long connectionTimeoutMillis,
+                             long validationTimeoutMillis, long leakDetectionThresholdMillis,
+                             Map<String, String> driverProperties) {
+    }
+
+    public record SQLiteConfig(boolean walMode, int readerPoolSize, int mmapSizeMb, int cacheSizeKb,
+                               int busyTimeoutMillis) {
+    }
+
+    public record PlayerDataCacheConfig(int offlineMaxSize, int offlineTtlSeconds) {
     }
 
     public record PeacefulModeConfig(boolean enable, boolean worldWhitelist, List<String> targetWorld,
                                      boolean keepChangeWorld) {
     }
 
+    public record MobClassificationConfig(List<String> offensiveAdd, List<String> offensiveRemove,
+                                          List<String> hostileAdd, List<String> hostileRemove) {
+    }
+
+    public record DeaggroConfig(int radius, double tickBudgetMillis) {
+    }
+
+    public record SweeperConfig(int intervalTicks, int entityBudget, int radius) {
+    }
+
+    public record SpawnSuppressionConfig(boolean enable, int radius) {
+    }
+
+    public record ZoneConfig(int maxChunkArea) {
+    }
+
+    public record PeacefulRulesConfig(List<String> blockedEffects, List<String> cancelledTargetReasons,
+                                      List<String> blockedDamagers) {
+    }
+
     public record MigrationConfig(DatabaseConnector.DatabaseType databaseType,
                                   String address, int port, String database, String username,
                                   String password, List<MigrationTableConfig> tableConfigs) {
@@ -138,7 +297,16 @@ public class MofuAssistantConfig {
     public String toString() {
         return "MofuAssistantConfig{" +
                 "initConfig=" + initConfig +
+                ", poolConfig=" + poolConfig +
+                ", sqliteConfig=" + sqliteConfig +
+                ", playerDataCacheConfig=" + playerDataCacheConfig +
                 ", peacefulModeConfig=" + peacefulModeConfig +
+                ", mobClassificationConfig=" + mobClassificationConfig +
+                ", deaggroConfig=" + deaggroConfig +
+                ", sweeperConfig=" + sweeperConfig +
+                ", spawnSuppressionConfig=" + spawnSuppressionConfig +
+                ", zoneConfig=" + zoneConfig +
+                ", peacefulRuleSet=" + peacefulRuleSet +
                 ", migrationConfigs=" + migrationConfigs +
                 ", debug=" + debug +
                 '}';
@@ -29,10 +29,10 @@ import org.bukkit.command.TabCompleter;
 import org.bukkit.entity.Player;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import page.nafuchoco.mofu.mofuassistant.MainThreadExecutor;
 import page.nafuchoco.mofu.mofuassistant.MofuAssistant;
 import page.nafuchoco.mofu.mofuassistant.database.CommunityInviteTable;
 
-import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -142,19 +142,22 @@ public class CommunityInviteCommand implements CommandExecutor, TabCompleter {
         @SuppressWarnings("deprecation")
         OfflinePlayer target = Bukkit.getOfflinePlayer(targetName);
 
-        try {
-            // 招待を作成
-            inviteTable.createInvite(target.getUniqueId(), communityName, player.getUniqueId());
-            player.sendMessage(PREFIX + targetName + " を招待しました");
+        // 招待を作成
+        inviteTable.runAsync(() -> inviteTable.createInvite(target.getUniqueId(), communityName, player.getUniqueId()))
+                .whenCompleteAsync((result, throwable) -> {
+                    if (throwable != null) {
+                        player.sendMessage(ChatColor.RED + "招待の作成中にエラーが発生しました。");
+                        plugin.getLogger().log(Level.SEVERE, "Failed to create invite", MainThreadExecutor.unwrap(throwable));
+                        return;
+                    }
 
-            // オンラインなら通知
-            if (target.isOnline() && target.getPlayer() != null) {
-                target.getPlayer().sendMessage(PREFIX + player.getName() + " から" + communityName + "への招待が来ています！");
-            }
-        } catch (SQLException e) {
-            player.sendMessage(ChatColor.RED + "招待の作成中にエラーが発生しました。");
-            plugin.getLogger().log(Level.SEVERE, "Failed to create invite", e);
-        }
+                    player.sendMessage(PREFIX + targetName + " を招待しました");
+
+                    // オンラインなら通知
+                    if (target.isOnline() && target.getPlayer() != null) {
+                        target.getPlayer().sendMessage(PREFIX + player.getName() + " から" + communityName + "への招待が来ています！");
+                    }
+                }, plugin.getMainThreadExecutor());
 
         return true;
     }
@@ -186,20 +189,25 @@ public class CommunityInviteCommand implements CommandExecutor, TabCompleter {
         @SuppressWarnings("deprecation")
         OfflinePlayer target = Bukkit.getOfflinePlayer(targetName);
 
-        try {
+        inviteTable.supplyAsync(() -> {
             // 招待をチェック
             if (!inviteTable.hasInvite(target.getUniqueId(), communityName)) {
-                player.sendMessage(PREFIX + targetName + " は招待されていません");
-                return true;
+                return false;
             }
 
             // 招待を削除
             inviteTable.deleteInvite(target.getUniqueId(), communityName);
-            player.sendMessage(PREFIX + targetName + " の招待を取り消しました");
-        } catch (SQLException e) {
-            player.sendMessage(ChatColor.RED + "招待のキャンセル中にエラーが発生しました。");
-            plugin.getLogger().log(Level.SEVERE, "Failed to cancel invite", e);
-        }
+            return true;
+        }).whenCompleteAsync((cancelled, throwable) -> {
+            if (throwable != null) {
+                player.sendMessage(ChatColor.RED + "招待のキャンセル中にエラーが発生しました。");
+                plugin.getLogger().log(Level.SEVERE, "Failed to cancel invite", MainThreadExecutor.unwrap(throwable));
+            } else if (cancelled) {
+                player.sendMessage(PREFIX + targetName + " の招待を取り消しました");
+            } else {
+                player.sendMessage(PREFIX + targetName + " は招待されていません");
+            }
+        }, plugin.getMainThreadExecutor());
 
         return true;
     }
@@ -213,9 +221,11 @@ public class CommunityInviteCommand implements CommandExecutor, TabCompleter {
             return true;
         }
 
-        try {
-            CommunityInvite invite = inviteTable.getInvite(player.getUniqueId());
-            if (invite != null) {
+        inviteTable.supplyAsync(() -> inviteTable.getInvite(player.getUniqueId())).whenCompleteAsync((invite, throwable) -> {
+            if (throwable != null) {
+                player.sendMessage(ChatColor.RED + "招待の確認中にエラーが発生しました。");
+                plugin.getLogger().log(Level.SEVERE, "Failed to check invite", MainThreadExecutor.unwrap(throwable));
+            } else if (invite != null) {
                 String displayName = manager.getDisplayName(invite.getCommunityName());
                 player.sendMessage(PREFIX + displayName + " への招待があります");
                 player.sendMessage(ChatColor.GRAY + "受け入れる: " + ChatColor.GREEN + "/community accept " + invite.getCommunityName());
@@ -223,10 +233,7 @@ public class CommunityInviteCommand implements CommandExecutor, TabCompleter {
             } else {
                 player.sendMessage(PREFIX + "招待がありません");
             }
-        } catch (SQLException e) {
-            player.sendMessage(ChatColor.RED + "招待の確認中にエラーが発生しました。");
-            plugin.getLogger().log(Level.SEVERE, "Failed to check invite", e);
-        }
+        }, plugin.getMainThreadExecutor());
 
         return true;
     }
@@ -245,18 +252,17 @@ public class CommunityInviteCommand implements CommandExecutor, TabCompleter {
         @SuppressWarnings("deprecation")
         OfflinePlayer target = Bukkit.getOfflinePlayer(targetName);
 
-        try {
-            CommunityInvite invite = inviteTable.getInvite(target.getUniqueId());
-            if (invite != null) {
+        inviteTable.supplyAsync(() -> inviteTable.getInvite(target.getUniqueId())).whenCompleteAsync((invite, throwable) -> {
+            if (throwable != null) {
+                sender.sendMessage(ChatColor.RED + "招待の確認中にエラーが発生しました。");
+                plugin.getLogger().log(Level.SEVERE, "Failed to check invite", MainThreadExecutor.unwrap(throwable));
+            } else if (invite != null) {
                 String displayName = manager.getDisplayName(invite.getCommunityName());
                 sender.sendMessage(PREFIX + targetName + " は " + displayName + " に招待されています");
             } else {
                 sender.sendMessage(PREFIX + targetName + " は招待されていません");
             }
-        } catch (SQLException e) {
-            sender.sendMessage(ChatColor.RED + "招待の確認中にエラーが発生しました。");
-            plugin.getLogger().log(Level.SEVERE, "Failed to check invite", e);
-        }
+        }, plugin.getMainThreadExecutor());
 
         return true;
     }
@@ -283,12 +289,16 @@ public class CommunityInviteCommand implements CommandExecutor, TabCompleter {
             return true;
         }
 
-        try {
-            CommunityInvite invite = inviteTable.getInvite(player.getUniqueId());
+        inviteTable.supplyAsync(() -> inviteTable.getInvite(player.getUniqueId())).whenCompleteAsync((invite, throwable) -> {
+            if (throwable != null) {
+                player.sendMessage(ChatColor.RED + "招待の受け入れ中にエラーが発生しました。");
+                plugin.getLogger().log(Level.SEVERE, "Failed to accept invite", MainThreadExecutor.unwrap(throwable));
+                return;
+            }
 
             if (invite == null || !invite.getCommunityName().equals(communityName)) {
                 player.sendMessage(PREFIX + communityName + " へは招待されていません");
-                return true;
+                return;
             }
 
             // LuckPermsでグループに追加
@@ -298,15 +308,16 @@ public class CommunityInviteCommand implements CommandExecutor, TabCompleter {
                 luckPerms.getUserManager().saveUser(user);
 
                 // 招待を削除
-                inviteTable.deleteInvite(player.getUniqueId(), communityName);
+                inviteTable.runAsync(() -> inviteTable.deleteInvite(player.getUniqueId(), communityName))
+                        .exceptionally(e -> {
+                            plugin.getLogger().log(Level.WARNING, "Failed to delete accepted invite", MainThreadExecutor.unwrap(e));
+                            return null;
+                        });
 
                 String displayName = manager.getDisplayName(communityName);
                 player.sendMessage(PREFIX + displayName + " に参加しました！");
             }
-        } catch (SQLException e) {
-            player.sendMessage(ChatColor.RED + "招待の受け入れ中にエラーが発生しました。");
-            plugin.getLogger().log(Level.SEVERE, "Failed to accept invite", e);
-        }
+        }, plugin.getMainThreadExecutor());
 
         return true;
     }
@@ -327,22 +338,27 @@ public class CommunityInviteCommand implements CommandExecutor, TabCompleter {
 
         String communityName = args[0];
 
-        try {
+        inviteTable.supplyAsync(() -> {
             CommunityInvite invite = inviteTable.getInvite(player.getUniqueId());
 
             if (invite == null || !invite.getCommunityName().equals(communityName)) {
-                player.sendMessage(PREFIX + "招待されていません");
-                return true;
+                return false;
             }
 
             // 招待を削除
             inviteTable.deleteInvite(player.getUniqueId(), communityName);
-            String displayName = manager.getDisplayName(communityName);
-            player.sendMessage(PREFIX + displayName + " への招待を拒否しました");
-        } catch (SQLException e) {
-            player.sendMessage(ChatColor.RED + "招待の拒否中にエラーが発生しました。");
-            plugin.getLogger().log(Level.SEVERE, "Failed to deny invite", e);
-        }
+            return true;
+        }).whenCompleteAsync((denied, throwable) -> {
+            if (throwable != null) {
+                player.sendMessage(ChatColor.RED + "招待の拒否中にエラーが発生しました。");
+                plugin.getLogger().log(Level.SEVERE, "Failed to deny invite", MainThreadExecutor.unwrap(throwable));
+            } else if (denied) {
+                String displayName = manager.getDisplayName(communityName);
+                player.sendMessage(PREFIX + displayName + " への招待を拒否しました");
+            } else {
+                player.sendMessage(PREFIX + "招待されていません");
+            }
+        }, plugin.getMainThreadExecutor());
 
         return true;
     }
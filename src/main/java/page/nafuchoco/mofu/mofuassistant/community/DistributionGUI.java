@@ -27,6 +27,7 @@ import org.bukkit.event.player.AsyncPlayerChatEvent;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
+import page.nafuchoco.mofu.mofuassistant.MainThreadExecutor;
 import page.nafuchoco.mofu.mofuassistant.MofuAssistant;
 import page.nafuchoco.mofu.mofuassistant.community.CommunityDistributionData;
 import page.nafuchoco.mofu.mofuassistant.database.CommunityDistributionTable;
@@ -36,6 +37,8 @@ import page.nafuchoco.mofu.mofuassistant.database.DistributionCycleTable;
 import java.sql.SQLException;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 
 /**
@@ -52,6 +55,10 @@ public class DistributionGUI implements Listener {
     private final Map<UUID, String> playerViewingCommunity;
     private final Map<UUID, Boolean> playerAwaitingAmountInput;
     private final Map<UUID, Integer> playerLogPage;
+    // プールからの受け取り処理を実行中のプレイヤー
+    private final Set<UUID> claimingPlayers;
+    // プールから取得済みで、まだ付与も払い戻しもしていない受け取り (データベーススレッドからも操作される)
+    private final Map<UUID, PendingClaim> undeliveredClaims;
 
     public DistributionGUI(MofuAssistant plugin, CommunityDistributionManager manager,
                           CommunityItemStorage storage, CommunityDistributionTable distributionTable,
@@ -65,6 +72,8 @@ public class DistributionGUI implements Listener {
         this.playerViewingCommunity = new HashMap<>();
         this.playerAwaitingAmountInput = new HashMap<>();
         this.playerLogPage = new HashMap<>();
+        this.claimingPlayers = new HashSet<>();
+        this.undeliveredClaims = new ConcurrentHashMap<>();
     }
 
     /**
@@ -72,19 +81,28 @@ public class DistributionGUI implements Listener {
      */
     public void openCommunitySelectionGUI(Player player) {
         // 配布サイクルのチェック
-        try {
-            DistributionCycle activeCycle = cycleTable.getActiveCycle();
+        cycleTable.supplyAsync(cycleTable::getActiveCycle).whenCompleteAsync((activeCycle, throwable) -> {
+            if (!player.isOnline()) {
+                return;
+            }
+
+            if (throwable != null) {
+                player.sendMessage(ChatColor.RED + "配布状態の確認中にエラーが発生しました。");
+                plugin.getLogger().log(Level.SEVERE, "配布サイクルの確認に失敗しました。", MainThreadExecutor.unwrap(throwable));
+                return;
+            }
+
             if (activeCycle == null || !activeCycle.isCurrentlyValid()) {
                 player.sendMessage(ChatColor.RED + "現在は配布期間外です。");
                 player.sendMessage(ChatColor.YELLOW + "次の配布期間をお待ちください。");
                 return;
             }
-        } catch (SQLException e) {
-            player.sendMessage(ChatColor.RED + "配布状態の確認中にエラーが発生しました。");
-            plugin.getLogger().log(Level.SEVERE, "配布サイクルの確認に失敗しました。", e);
-            return;
-        }
 
+            showCommunitySelectionGUI(player);
+        }, plugin.getMainThreadExecutor());
+    }
+
+    private void showCommunitySelectionGUI(Player player) {
         List<String> communities = manager.getPlayerCommunities(player);
 
         if (communities.isEmpty()) {
@@ -146,33 +164,33 @@ public class DistributionGUI implements Listener {
             return;
         }
 
-        // 現在のサイクル情報を取得
-        DistributionCycle activeCycle;
-        try {
-            activeCycle = cycleTable.getActiveCycle();
-            if (activeCycle == null || !activeCycle.isCurrentlyValid()) {
+        // 現在のサイクルとプール情報を取得
+        loadPoolState(communityName).whenCompleteAsync((state, throwable) -> {
+            if (!player.isOnline()) {
+                return;
+            }
+
+            if (throwable != null) {
+                player.sendMessage(ChatColor.RED + "配布状態の確認中にエラーが発生しました。");
+                plugin.getLogger().log(Level.SEVERE, "配布サイクルとプール情報の取得に失敗しました。", MainThreadExecutor.unwrap(throwable));
+                return;
+            }
+
+            if (state.cycle() == null) {
                 player.sendMessage(ChatColor.RED + "現在は配布期間外です。");
                 return;
             }
-        } catch (SQLException e) {
-            player.sendMessage(ChatColor.RED + "配布状態の確認中にエラーが発生しました。");
-            plugin.getLogger().log(Level.SEVERE, "配布サイクルの確認に失敗しました。", e);
-            return;
-        }
 
-        // プール情報を取得
+            showDistributionGUI(player, communityName, distributionItem, state.pool());
+        }, plugin.getMainThreadExecutor());
+    }
+
+    private void showDistributionGUI(Player player, String communityName, ItemStack distributionItem, CommunityPool pool) {
         int remainingAmount = 0;
         int totalAmount = 0;
-        try {
-            CommunityPool pool = poolTable.getPool(activeCycle.getCycleId(), communityName);
-            if (pool != null) {
-                remainingAmount = pool.getRemainingAmount();
-                totalAmount = pool.getTotalAmount();
-            }
-        } catch (SQLException e) {
-            player.sendMessage(ChatColor.RED + "プール情報の取得中にエラーが発生しました。");
-            plugin.getLogger().log(Level.SEVERE, "プール情報の取得に失敗しました。", e);
-            return;
+        if (pool != null) {
+            remainingAmount = pool.getRemainingAmount();
+            totalAmount = pool.getTotalAmount();
         }
 
         int memberCount = manager.getCommunityMemberCount(communityName);
@@ -334,46 +352,67 @@ public class DistributionGUI implements Listener {
 
     /**
      * プレイヤーにアイテムを配布
+     * プールの確認と受け取りはデータベーススレッドで行い、アイテムの付与はメインスレッドで行う
      * @param amount 受け取る個数（-1の場合は残り全て）
      */
     private void giveItemToPlayer(Player player, String communityName, int amount) {
+        // 前回の受け取り処理が終わるまでは受け付けない
+        if (!claimingPlayers.add(player.getUniqueId())) {
+            return;
+        }
+
+        MainThreadExecutor mainThread = plugin.getMainThreadExecutor();
+        loadPoolState(communityName)
+                .thenApplyAsync(state -> prepareClaim(player, state, amount), mainThread)
+                .thenCompose(request -> request == null
+                        ? CompletableFuture.<ClaimResult>completedFuture(null)
+                        : claimFromPool(player, communityName, request))
+                .whenComplete((result, throwable) -> {
+                    if (result != null && result.claimed())
+                        holdClaim(player, communityName, result.request());
+                })
+                .whenCompleteAsync((result, throwable) -> {
+                    claimingPlayers.remove(player.getUniqueId());
+                    if (throwable != null) {
+                        plugin.getLogger().log(Level.SEVERE, "プールからの取得に失敗しました。", MainThreadExecutor.unwrap(throwable));
+                        if (player.isOnline()) {
+                            player.sendMessage(ChatColor.RED + "アイテムの取得中にエラーが発生しました。");
+                            player.closeInventory();
+                        }
+                    } else if (result != null) {
+                        deliverClaim(player, communityName, result);
+                    }
+                }, mainThread);
+    }
+
+    /**
+     * プールの状態とプレイヤーのインベントリから受け取る個数を決定
+     * @return 受け取りを中止する場合はnull
+     */
+    private ClaimRequest prepareClaim(Player player, PoolState state, int amount) {
+        if (!player.isOnline()) {
+            return null;
+        }
+
         // 配布サイクルの再確認
-        DistributionCycle activeCycle;
-        try {
-            activeCycle = cycleTable.getActiveCycle();
-            if (activeCycle == null || !activeCycle.isCurrentlyValid()) {
-                player.sendMessage(ChatColor.RED + "配布期間が終了しました。");
-                player.closeInventory();
-                return;
-            }
-        } catch (SQLException e) {
-            player.sendMessage(ChatColor.RED + "配布状態の確認中にエラーが発生しました。");
-            plugin.getLogger().log(Level.SEVERE, "配布状態の確認に失敗しました。", e);
+        if (state.cycle() == null) {
+            player.sendMessage(ChatColor.RED + "配布期間が終了しました。");
             player.closeInventory();
-            return;
+            return null;
         }
 
         ItemStack distributionItem = storage.loadItem();
         if (distributionItem == null) {
             player.sendMessage(ChatColor.RED + "配布するアイテムが設定されていません。");
             player.closeInventory();
-            return;
+            return null;
         }
 
-        // プール情報を取得
-        CommunityPool pool;
-        try {
-            pool = poolTable.getPool(activeCycle.getCycleId(), communityName);
-            if (pool == null || pool.getRemainingAmount() <= 0) {
-                player.sendMessage(ChatColor.RED + "配布可能なアイテムが残っていません。");
-                player.closeInventory();
-                return;
-            }
-        } catch (SQLException e) {
-            player.sendMessage(ChatColor.RED + "プール情報の取得中にエラーが発生しました。");
-            plugin.getLogger().log(Level.SEVERE, "プール情報の取得に失敗しました。", e);
+        CommunityPool pool = state.pool();
+        if (pool == null || pool.getRemainingAmount() <= 0) {
+            player.sendMessage(ChatColor.RED + "配布可能なアイテムが残っていません。");
             player.closeInventory();
-            return;
+            return null;
         }
 
         // 受け取る個数を決定（-1の場合は残り全て）
@@ -381,13 +420,13 @@ public class DistributionGUI implements Listener {
 
         if (claimAmount <= 0) {
             player.sendMessage(ChatColor.RED + "受け取る個数は1以上を指定してください。");
-            return;
+            return null;
         }
 
         if (claimAmount > pool.getRemainingAmount()) {
             player.sendMessage(ChatColor.RED + "指定された個数がプールの残量を超えています。");
             player.sendMessage(ChatColor.YELLOW + "残り: " + pool.getRemainingAmount() + "個");
-            return;
+            return null;
         }
 
         // インベントリの空き容量を計算
@@ -408,23 +447,62 @@ public class DistributionGUI implements Listener {
             actualClaimAmount = emptySlots * maxStackSize;
             if (actualClaimAmount <= 0) {
                 player.sendMessage(ChatColor.RED + "インベントリに空きがありません。");
-                return;
+                return null;
             }
             player.sendMessage(ChatColor.YELLOW + "インベントリの空きが不足しているため、" + actualClaimAmount + "個のみ受け取ります。");
         }
 
-        // プールから取得を試みる
-        boolean claimed;
-        try {
-            claimed = poolTable.claimFromPool(activeCycle.getCycleId(), communityName, actualClaimAmount);
-        } catch (SQLException e) {
-            player.sendMessage(ChatColor.RED + "アイテムの取得中にエラーが発生しました。");
-            plugin.getLogger().log(Level.SEVERE, "プールからの取得に失敗しました。", e);
-            player.closeInventory();
+        return new ClaimRequest(state.cycle().getCycleId(), giveItem, actualClaimAmount);
+    }
+
+    /**
+     * プールから取得し、配布履歴を記録
+     */
+    private CompletableFuture<ClaimResult> claimFromPool(Player player, String communityName, ClaimRequest request) {
+        UUID playerId = player.getUniqueId();
+        return poolTable.supplyAsync(() -> {
+            if (!poolTable.claimFromPool(request.cycleId(), communityName, request.amount())) {
+                return new ClaimResult(request, false, 0);
+            }
+
+            // 配布履歴を記録
+            try {
+                distributionTable.addClaim(request.cycleId(), playerId, communityName, request.amount());
+            } catch (SQLException e) {
+                plugin.getLogger().log(Level.WARNING, "配布履歴の記録に失敗しました。", e);
+            }
+
+            // 残量を取得
+            int newRemaining = 0;
+            try {
+                CommunityPool updatedPool = poolTable.getPool(request.cycleId(), communityName);
+                if (updatedPool != null) {
+                    newRemaining = updatedPool.getRemainingAmount();
+                }
+            } catch (SQLException e) {
+                plugin.getLogger().log(Level.WARNING, "残量の取得に失敗しました。", e);
+            }
+            return new ClaimResult(request, true, newRemaining);
+        });
+    }
+
+    /**
+     * プールから取得したアイテムをプレイヤーに付与
+     */
+    private void deliverClaim(Player player, String communityName, ClaimResult result) {
+        ClaimRequest request = result.request();
+        // 停止処理で払い戻し済みの場合は付与しない
+        if (result.claimed() && undeliveredClaims.remove(player.getUniqueId()) == null) {
+            return;
+        }
+        if (!player.isOnline()) {
+            if (result.claimed()) {
+                refundClaim(new PendingClaim(player.getUniqueId(), player.getName(), communityName, request));
+            }
             return;
         }
 
-        if (!claimed) {
+        if (!result.claimed()) {
             player.sendMessage(ChatColor.RED + "プールの残量が不足しています。");
             player.sendMessage(ChatColor.YELLOW + "他のプレイヤーが先に受け取った可能性があります。");
             player.closeInventory();
@@ -433,44 +511,74 @@ public class DistributionGUI implements Listener {
 
         // アイテムをプレイヤーのインベントリに追加
         List<ItemStack> itemsToGive = new ArrayList<>();
-        int remaining = actualClaimAmount;
+        int maxStackSize = request.item().getMaxStackSize();
+        int remaining = request.amount();
         while (remaining > 0) {
-            ItemStack stack = giveItem.clone();
+            ItemStack stack = request.item().clone();
             int stackAmount = Math.min(remaining, maxStackSize);
             stack.setAmount(stackAmount);
             itemsToGive.add(stack);
             remaining -= stackAmount;
         }
 
-        // アイテムを付与
+        // アイテムを付与（空き容量の確認後にインベントリが埋まった場合は足元にドロップ）
         for (ItemStack item : itemsToGive) {
-            player.getInventory().addItem(item);
+            player.getInventory().addItem(item).values()
+                    .forEach(leftover -> player.getWorld().dropItemNaturally(player.getLocation(), leftover));
         }
 
-        // 配布履歴を記録
-        try {
-            distributionTable.addClaim(activeCycle.getCycleId(), player.getUniqueId(), communityName, actualClaimAmount);
-        } catch (SQLException e) {
-            plugin.getLogger().log(Level.WARNING, "配布履歴の記録に失敗しました。", e);
+        String displayName = manager.getDisplayName(communityName);
+        player.sendMessage(ChatColor.GREEN + "コミュニティ「" + displayName + "」から " +
+                          request.amount() + "個のアイテムを受け取りました。");
+        player.sendMessage(ChatColor.GRAY + "プールの残り: " + result.remaining() + "個");
+        player.closeInventory();
+        playerViewingCommunity.remove(player.getUniqueId());
+    }
+
+    /**
+     * プールから取得した分を付与されるまで保持する
+     * プラグインの無効化後はメインスレッドで付与できないため、データベーススレッドでそのまま払い戻す
+     */
+    private void holdClaim(Player player, String communityName, ClaimRequest request) {
+        PendingClaim claim = new PendingClaim(player.getUniqueId(), player.getName(), communityName, request);
+        undeliveredClaims.put(claim.playerId(), claim);
+        // cleanup()より後に保持した場合に備えて、無効化後は自身で払い戻す
+        if (!plugin.isEnabled() && undeliveredClaims.remove(claim.playerId(), claim)) {
+            returnClaim(claim, "に付与する前にプラグインが停止したため");
         }
+    }
 
-        // 残量を取得
-        int newRemaining = 0;
-        try {
-            CommunityPool updatedPool = poolTable.getPool(activeCycle.getCycleId(), communityName);
-            if (updatedPool != null) {
-                newRemaining = updatedPool.getRemainingAmount();
+    /**
+     * 付与する前にログアウトしたプレイヤーの取得分をプールに戻し、配布履歴を取り消す
+     */
+    private void refundClaim(PendingClaim claim) {
+        poolTable.runAsync(() -> returnClaim(claim, "がログアウトしたため")).whenComplete((result, throwable) -> {
+            // データベース処理用のスレッドに渡せなかった場合
+            if (throwable != null) {
+                logRefundFailure(claim, "がログアウトしたため", MainThreadExecutor.unwrap(throwable));
             }
+        });
+    }
+
+    /**
+     * 取得分をプールに戻し、配布履歴を取り消す (データベースを直接操作するため、呼び出したスレッドをブロックする)
+     */
+    private void returnClaim(PendingClaim claim, String reason) {
+        ClaimRequest request = claim.request();
+        try {
+            poolTable.returnToPool(request.cycleId(), claim.communityName(), request.amount());
+            distributionTable.revertClaim(request.cycleId(), claim.playerId(), claim.communityName(), request.amount());
+            plugin.getLogger().log(Level.INFO, "プレイヤー " + claim.playerName() + " " + reason + "、コミュニティ「" +
+                    claim.communityName() + "」から取得した " + request.amount() + "個のアイテムをプールに払い戻しました。");
         } catch (SQLException e) {
-            plugin.getLogger().log(Level.WARNING, "残量の取得に失敗しました。", e);
+            logRefundFailure(claim, reason, e);
         }
+    }
 
-        String displayName = manager.getDisplayName(communityName);
-        player.sendMessage(ChatColor.GREEN + "コミュニティ「" + displayName + "」から " +
-                          actualClaimAmount + "個のアイテムを受け取りました。");
-        player.sendMessage(ChatColor.GRAY + "プールの残り: " + newRemaining + "個");
-        player.closeInventory();
-        playerViewingCommunity.remove(player.getUniqueId());
+    private void logRefundFailure(PendingClaim claim, String reason, Throwable throwable) {
+        plugin.getLogger().log(Level.SEVERE, "プレイヤー " + claim.playerName() + " " + reason + "、コミュニティ「" +
+                claim.communityName() + "」から取得した " + claim.request().amount() +
+                "個のアイテムを付与できず、プールへの払い戻しにも失敗しました。", throwable);
     }
 
     @EventHandler
@@ -523,32 +631,37 @@ public class DistributionGUI implements Listener {
             return;
         }
 
-        // 現在のサイクル情報を取得
-        DistributionCycle activeCycle;
-        try {
-            activeCycle = cycleTable.getActiveCycle();
+        // 現在のサイクル情報とコミュニティのログを取得
+        cycleTable.supplyAsync(() -> {
+            DistributionCycle activeCycle = cycleTable.getActiveCycle();
             if (activeCycle == null) {
+                return null;
+            }
+            List<CommunityDistributionData> logs = distributionTable.getCommunityDistributions(activeCycle.getCycleId(), communityName);
+            // 新しい順にソート
+            logs.sort((a, b) -> b.getLastClaimTime().compareTo(a.getLastClaimTime()));
+            return logs;
+        }).whenCompleteAsync((logs, throwable) -> {
+            if (!player.isOnline()) {
+                return;
+            }
+
+            if (throwable != null) {
+                player.sendMessage(ChatColor.RED + "ログの取得中にエラーが発生しました。");
+                plugin.getLogger().log(Level.SEVERE, "ログの取得に失敗しました。", MainThreadExecutor.unwrap(throwable));
+                return;
+            }
+
+            if (logs == null) {
                 player.sendMessage(ChatColor.RED + "現在、アクティブな配布サイクルはありません。");
                 return;
             }
-        } catch (SQLException e) {
-            player.sendMessage(ChatColor.RED + "配布状態の確認中にエラーが発生しました。");
-            plugin.getLogger().log(Level.SEVERE, "配布サイクルの確認に失敗しました。", e);
-            return;
-        }
 
-        // コミュニティのログを取得
-        List<CommunityDistributionData> logs;
-        try {
-            logs = distributionTable.getCommunityDistributions(activeCycle.getCycleId(), communityName);
-            // 新しい順にソート
-            logs.sort((a, b) -> b.getLastClaimTime().compareTo(a.getLastClaimTime()));
-        } catch (SQLException e) {
-            player.sendMessage(ChatColor.RED + "ログの取得中にエラーが発生しました。");
-            plugin.getLogger().log(Level.SEVERE, "ログの取得に失敗しました。", e);
-            return;
-        }
+            showDistributionLogGUI(player, communityName, logs, page);
+        }, plugin.getMainThreadExecutor());
+    }
 
+    private void showDistributionLogGUI(Player player, String communityName, List<CommunityDistributionData> logs, int page) {
         if (logs.isEmpty()) {
             player.sendMessage(ChatColor.YELLOW + "このコミュニティの受け取りログはまだありません。");
             return;
@@ -641,9 +754,45 @@ public class DistributionGUI implements Listener {
         player.openInventory(inv);
     }
 
+    /**
+     * 現在の配布サイクルとコミュニティのプールを取得
+     * 配布期間外の場合はサイクルがnullになる
+     */
+    private CompletableFuture<PoolState> loadPoolState(String communityName) {
+        return cycleTable.supplyAsync(() -> {
+            DistributionCycle activeCycle = cycleTable.getActiveCycle();
+            if (activeCycle == null || !activeCycle.isCurrentlyValid()) {
+                return new PoolState(null, null);
+            }
+            return new PoolState(activeCycle, poolTable.getPool(activeCycle.getCycleId(), communityName));
+        });
+    }
+
     public void cleanup() {
         playerViewingCommunity.clear();
         playerAwaitingAmountInput.clear();
         playerLogPage.clear();
+        claimingPlayers.clear();
+
+        // 無効化後はメインスレッドでの付与が実行されないため、付与待ちの取得分を払い戻す
+        for (UUID playerId : new ArrayList<>(undeliveredClaims.keySet())) {
+            PendingClaim claim = undeliveredClaims.remove(playerId);
+            if (claim != null) {
+                returnClaim(claim, "に付与する前にプラグインが停止したため");
+            }
+        }
+    }
+
+
+    private record PoolState(DistributionCycle cycle, CommunityPool pool) {
+    }
+
+    private record ClaimRequest(int cycleId, ItemStack item, int amount) {
+    }
+
+    private record ClaimResult(ClaimRequest request, boolean claimed, int remaining) {
+    }
+
+    private record PendingClaim(UUID playerId, String playerName, String communityName, ClaimRequest request) {
     }
 }
@@ -26,11 +26,11 @@ import org.bukkit.entity.Player;
 import org.bukkit.inventory.ItemStack;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import page.nafuchoco.mofu.mofuassistant.MainThreadExecutor;
 import page.nafuchoco.mofu.mofuassistant.MofuAssistant;
 import page.nafuchoco.mofu.mofuassistant.database.CommunityPoolTable;
 import page.nafuchoco.mofu.mofuassistant.database.DistributionCycleTable;
 
-import java.sql.SQLException;
 import java.util.*;
 import java.util.logging.Level;
 
@@ -234,13 +234,16 @@ public class OsusowakenCommand implements CommandExecutor, TabCompleter {
             return true;
         }
 
-        try {
-            scheduler.startManualCycle();
+        // 定期チェックと同様に、サイクルの切り替えはメインスレッド外で行う
+        cycleTable.runAsync(scheduler::startManualCycle).whenCompleteAsync((result, throwable) -> {
+            if (throwable != null) {
+                sender.sendMessage(ChatColor.RED + "配布サイクルの開始中にエラーが発生しました。");
+                plugin.getLogger().log(Level.SEVERE, "配布サイクルの開始に失敗しました。", MainThreadExecutor.unwrap(throwable));
+                return;
+            }
+
             sender.sendMessage(ChatColor.GREEN + "配布サイクルを手動で開始しました。");
-        } catch (SQLException e) {
-            sender.sendMessage(ChatColor.RED + "配布サイクルの開始中にエラーが発生しました。");
-            plugin.getLogger().log(Level.SEVERE, "配布サイクルの開始に失敗しました。", e);
-        }
+        }, plugin.getMainThreadExecutor());
 
         return true;
     }
@@ -254,15 +257,16 @@ public class OsusowakenCommand implements CommandExecutor, TabCompleter {
             return true;
         }
 
-        try {
-            scheduler.endManualCycle();
-            sender.sendMessage(ChatColor.GREEN + "配布サイクルを終了しました。未回収のアイテムは破棄されました。");
-        } catch (IllegalStateException e) {
-            sender.sendMessage(ChatColor.RED + e.getMessage());
-        } catch (SQLException e) {
-            sender.sendMessage(ChatColor.RED + "配布サイクルの終了中にエラーが発生しました。");
-            plugin.getLogger().log(Level.SEVERE, "配布サイクルの終了に失敗しました。", e);
-        }
+        cycleTable.runAsync(scheduler::endManualCycle).whenCompleteAsync((result, throwable) -> {
+            if (throwable == null) {
+                sender.sendMessage(ChatColor.GREEN + "配布サイクルを終了しました。未回収のアイテムは破棄されました。");
+            } else if (MainThreadExecutor.unwrap(throwable) instanceof IllegalStateException e) {
+                sender.sendMessage(ChatColor.RED + e.getMessage());
+            } else {
+                sender.sendMessage(ChatColor.RED + "配布サイクルの終了中にエラーが発生しました。");
+                plugin.getLogger().log(Level.SEVERE, "配布サイクルの終了に失敗しました。", MainThreadExecutor.unwrap(throwable));
+            }
+        }, plugin.getMainThreadExecutor());
 
         return true;
     }
@@ -276,12 +280,16 @@ public class OsusowakenCommand implements CommandExecutor, TabCompleter {
             return true;
         }
 
-        try {
-            DistributionCycle activeCycle = cycleTable.getActiveCycle();
+        cycleTable.supplyAsync(cycleTable::getActiveCycle).whenCompleteAsync((activeCycle, throwable) -> {
+            if (throwable != null) {
+                sender.sendMessage(ChatColor.RED + "配布状態の取得中にエラーが発生しました。");
+                plugin.getLogger().log(Level.SEVERE, "配布状態の取得に失敗しました。", MainThreadExecutor.unwrap(throwable));
+                return;
+            }
 
             if (activeCycle == null) {
                 sender.sendMessage(ChatColor.RED + "現在、アクティブな配布サイクルはありません。");
-                return true;
+                return;
             }
 
             sender.sendMessage(ChatColor.GREEN + "=== 配布サイクル状態 ===");
@@ -297,11 +305,7 @@ public class OsusowakenCommand implements CommandExecutor, TabCompleter {
             } else {
                 sender.sendMessage(ChatColor.GRAY + "配布アイテム: " + ChatColor.RED + "未設定");
             }
-
-        } catch (SQLException e) {
-            sender.sendMessage(ChatColor.RED + "配布状態の取得中にエラーが発生しました。");
-            plugin.getLogger().log(Level.SEVERE, "配布状態の取得に失敗しました。", e);
-        }
+        }, plugin.getMainThreadExecutor());
 
         return true;
     }
@@ -337,65 +341,81 @@ public class OsusowakenCommand implements CommandExecutor, TabCompleter {
             return true;
         }
 
-        try {
-            DistributionCycle activeCycle = cycleTable.getActiveCycle();
+        // コミュニティの一覧はLuckPermsから取得するため、メインスレッドで確定させておく
+        Set<String> communities = manager.getAllCommunities();
 
+        cycleTable.supplyAsync(() -> {
+            DistributionCycle activeCycle = cycleTable.getActiveCycle();
             if (activeCycle == null) {
-                sender.sendMessage(ChatColor.RED + "現在、アクティブな配布サイクルはありません。");
-                return true;
+                return null;
             }
 
-            Set<String> communities = manager.getAllCommunities();
+            Map<String, CommunityPool> pools = new LinkedHashMap<>();
+            for (String communityName : communities) {
+                pools.put(communityName, poolTable.getPool(activeCycle.getCycleId(), communityName));
+            }
+            return new PoolsSnapshot(activeCycle, pools);
+        }).whenCompleteAsync((snapshot, throwable) -> {
+            if (throwable != null) {
+                sender.sendMessage(ChatColor.RED + "プール情報の取得中にエラーが発生しました。");
+                plugin.getLogger().log(Level.SEVERE, "プール情報の取得に失敗しました。", MainThreadExecutor.unwrap(throwable));
+                return;
+            }
 
-            if (communities.isEmpty()) {
-                sender.sendMessage(ChatColor.RED + "配布対象のコミュニティが見つかりません。");
-                return true;
+            if (snapshot == null) {
+                sender.sendMessage(ChatColor.RED + "現在、アクティブな配布サイクルはありません。");
+                return;
             }
 
-            sender.sendMessage(ChatColor.GREEN + "=== コミュニティプール情報 ===");
-            sender.sendMessage(ChatColor.GRAY + "サイクルID: " + ChatColor.WHITE + activeCycle.getCycleId());
-            sender.sendMessage("");
+            showPools(sender, snapshot);
+        }, plugin.getMainThreadExecutor());
 
-            // コミュニティごとのプール情報を表示
-            int totalDistribution = 0;
-            int totalRemaining = 0;
+        return true;
+    }
 
-            for (String communityName : communities) {
-                String displayName = manager.getDisplayName(communityName);
-                CommunityPool pool = poolTable.getPool(activeCycle.getCycleId(), communityName);
-
-                if (pool != null) {
-                    int remaining = pool.getRemainingAmount();
-                    int total = pool.getTotalAmount();
-                    int claimed = total - remaining;
-                    double claimedPercent = total > 0 ? (claimed * 100.0 / total) : 0;
-
-                    totalDistribution += total;
-                    totalRemaining += remaining;
-
-                    sender.sendMessage(ChatColor.YELLOW + displayName);
-                    sender.sendMessage(ChatColor.GRAY + "  合計: " + ChatColor.WHITE + total + "個" +
-                                      ChatColor.GRAY + " | 残り: " + ChatColor.AQUA + remaining + "個" +
-                                      ChatColor.GRAY + " | 受取済: " + ChatColor.GREEN + claimed + "個" +
-                                      ChatColor.GRAY + " (" + String.format("%.1f", claimedPercent) + "%)");
-                } else {
-                    sender.sendMessage(ChatColor.YELLOW + displayName);
-                    sender.sendMessage(ChatColor.GRAY + "  " + ChatColor.RED + "プール情報なし");
-                }
-            }
+    private void showPools(CommandSender sender, PoolsSnapshot snapshot) {
+        if (snapshot.pools().isEmpty()) {
+            sender.sendMessage(ChatColor.RED + "配布対象のコミュニティが見つかりません。");
+            return;
+        }
 
-            sender.sendMessage("");
-            sender.sendMessage(ChatColor.GREEN + "=== 合計 ===");
-            sender.sendMessage(ChatColor.GRAY + "総配布数: " + ChatColor.WHITE + totalDistribution + "個");
-            sender.sendMessage(ChatColor.GRAY + "残り: " + ChatColor.AQUA + totalRemaining + "個");
-            sender.sendMessage(ChatColor.GRAY + "受取済: " + ChatColor.GREEN + (totalDistribution - totalRemaining) + "個");
-
-        } catch (SQLException e) {
-            sender.sendMessage(ChatColor.RED + "プール情報の取得中にエラーが発生しました。");
-            plugin.getLogger().log(Level.SEVERE, "プール情報の取得に失敗しました。", e);
+        sender.sendMessage(ChatColor.GREEN + "=== コミュニティプール情報 ===");
+        sender.sendMessage(ChatColor.GRAY + "サイクルID: " + ChatColor.WHITE + snapshot.cycle().getCycleId());
+        sender.sendMessage("");
+
+        // コミュニティごとのプール情報を表示
+        int totalDistribution = 0;
+        int totalRemaining = 0;
+
+        for (Map.Entry<String, CommunityPool> entry : snapshot.pools().entrySet()) {
+            String displayName = manager.getDisplayName(entry.getKey());
+            CommunityPool pool = entry.getValue();
+
+            if (pool != null) {
+                int remaining = pool.getRemainingAmount();
+                int total = pool.getTotalAmount();
+                int claimed = total - remaining;
+                double claimedPercent = total > 0 ? (claimed * 100.0 / total) : 0;
+
+                totalDistribution += total;
+                totalRemaining += remaining;
+
+                sender.sendMessage(ChatColor.YELLOW + displayName);
+                sender.sendMessage(ChatColor.GRAY + "  合計: " + ChatColor.WHITE + total + "個" +
+                                  ChatColor.GRAY + " | 残り: " + ChatColor.AQUA + remaining + "個" +
+                                  ChatColor.GRAY + " | 受取済: " + ChatColor.GREEN + claimed + "個" +
+                                  ChatColor.GRAY + " (" + String.format("%.1f", claimedPercent) + "%)");
+            } else {
+                sender.sendMessage(ChatColor.YELLOW + displayName);
+                sender.sendMessage(ChatColor.GRAY + "  " + ChatColor.RED + "プール情報なし");
+            }
         }
 
-        return true;
+        sender.sendMessage("");
+        sender.sendMessage(ChatColor.GREEN + "=== 合計 ===");
+        sender.sendMessage(ChatColor.GRAY + "総配布数: " + ChatColor.WHITE + totalDistribution + "個");
+        sender.sendMessage(ChatColor.GRAY + "残り: " + ChatColor.AQUA + totalRemaining + "個");
+        sender.sendMessage(ChatColor.GRAY + "受取済: " + ChatColor.GREEN + (totalDistribution - totalRemaining) + "個");
     }
 
     @Nullable
@@ -433,4 +453,8 @@ public class OsusowakenCommand implements CommandExecutor, TabCompleter {
 
         return completions;
     }
+
+
+    private record PoolsSnapshot(DistributionCycle cycle, Map<String, CommunityPool> pools) {
+    }
 }
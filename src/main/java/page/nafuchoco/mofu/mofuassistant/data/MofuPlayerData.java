@@ -17,6 +17,7 @@
 package page.nafuchoco.mofu.mofuassistant.data;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.val;
 import org.apache.commons.lang.builder.EqualsBuilder;
 import org.apache.commons.lang.builder.HashCodeBuilder;
 import org.bukkit.Bukkit;
@@ -24,7 +25,6 @@ import org.bukkit.World;
 import org.bukkit.entity.Player;
 import page.nafuchoco.mofu.mofuassistant.MofuAssistant;
 
-import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
@@ -33,14 +33,12 @@ import java.util.logging.Level;
 public class MofuPlayerData {
     private final UUID id;
     private final String playerName;
-    private final Player bukkitPlayer;
     private final PlayerSettings settings;
 
 
     public MofuPlayerData(UUID id, String playerName, PlayerSettings settings) {
         this.id = id;
         this.playerName = playerName;
-        bukkitPlayer = Bukkit.getPlayer(id);
         this.settings = settings;
     }
 
@@ -64,12 +62,12 @@ public class MofuPlayerData {
 
     /**
      * メソッドはBukkitのPlayerクラスを返します。
-     * このプレイヤーデータが読み込まれた際にプレイヤーがサーバーにログインしていなかった場合はnullを返します。
+     * プレイヤーが現在サーバーにログインしていない場合はnullを返します。
      *
      * @return BukkitのPlayer
      */
     public Player getBukkitPlayer() {
-        return bukkitPlayer;
+        return Bukkit.getPlayer(id);
     }
 
     /**
@@ -81,45 +79,128 @@ public class MofuPlayerData {
         return settings;
     }
 
+    /**
+     * プレイヤーデータの変更をデータベースに保存します。
+     * 書き込みは遅延して非同期で行われ、短時間の複数回の変更は1回の書き込みにまとめられます。
+     * PDCに保存する設定の場合は、オンラインのプレイヤーのPDCに保存されます。
+     */
     public void updatePlayerData() {
-        var updateDate = this;
-        if (bukkitPlayer != null && !playerName.equals(bukkitPlayer.getName()))
-            updateDate = new MofuPlayerData(id, bukkitPlayer.getName(), settings);
-
-        try {
-            MofuAssistant.getInstance().getMofuAssistantTable().updatePlayerData(updateDate);
-
-            if (MofuAssistant.getInstance().getPluginConfig().isDebug())
-                MofuAssistant.getInstance().getLogger().log(Level.INFO, this.toString());
-        } catch (SQLException e) {
-            MofuAssistant.getInstance().getLogger().log(Level.WARNING, "Failed to update the player data.", e);
+        val bukkitPlayer = getBukkitPlayer();
+        val persistentDataStorage = MofuAssistant.getInstance().getPersistentDataStorage();
+        if (persistentDataStorage != null) {
+            if (bukkitPlayer == null) {
+                MofuAssistant.getInstance().getLogger().log(Level.WARNING, "Cannot save the settings of an offline player to the PersistentDataContainer: " + id);
+            } else if (Bukkit.isPrimaryThread()) {
+                persistentDataStorage.save(bukkitPlayer, settings);
+            } else {
+                Bukkit.getScheduler().runTask(MofuAssistant.getInstance(), () -> persistentDataStorage.save(bukkitPlayer, settings));
+            }
+        } else {
+            var updateDate = this;
+            if (bukkitPlayer != null && !playerName.equals(bukkitPlayer.getName()))
+                updateDate = new MofuPlayerData(id, bukkitPlayer.getName(), settings);
+            MofuAssistant.getInstance().getPlayerDataWriteQueue().markDirty(updateDate);
         }
+        if (MofuAssistant.getInstance().getPluginConfig().isDebug())
+            MofuAssistant.getInstance().getLogger().log(Level.INFO, this.toString());
     }
 
 
     @JsonIgnoreProperties(ignoreUnknown = true)
     public static class PlayerSettings {
-        private List<String> peacefulEnabledWorld;
+        private static volatile boolean keepChangeWorld;
+
+        // 永続化される形式。ワールド名のリストとして保存する
+        // 非同期の書き込み中に変更されないよう、変更時は新しいリストに置き換える
+        private volatile List<String> peacefulEnabledWorld;
+        // 実行時の判定に使用する形式。WorldIndexのインデックスをビット位置とする
+        private transient long peacefulWorldBits;
+        private transient boolean indexed;
+
+        /**
+         * ワールドを移動した際にピースフルモードを維持するかを設定します。
+         * 設定の読み込み時に呼び出されます。
+         *
+         * @param keepChangeWorld ワールド移動時にピースフルモードを維持する場合はtrue
+         */
+        public static void setKeepChangeWorld(boolean keepChangeWorld) {
+            PlayerSettings.keepChangeWorld = keepChangeWorld;
+        }
+
+        public PlayerSettings() {
+        }
+
+        PlayerSettings(List<String> peacefulEnabledWorld) {
+            this.peacefulEnabledWorld = peacefulEnabledWorld;
+        }
+
+        /**
+         * ピースフルモードが有効なワールド名の一覧を返します。
+         * 変更時はリストごと置き換えられるため、返されたリストは変更されません。
+         *
+         * @return ワールド名の一覧
+         */
+        List<String> getPeacefulEnabledWorlds() {
+            // 非同期の書き込みから呼び出されるため、索引の構築は行わない
+            List<String> worlds = peacefulEnabledWorld;
+            return worlds != null ? worlds : List.of();
+        }
 
         public boolean isPeacefulMode(World world) {
-            if (peacefulEnabledWorld == null)
-                peacefulEnabledWorld = new ArrayList<>();
+            if (!indexed)
+                buildIndex();
 
-            if (MofuAssistant.getInstance().getPluginConfig().getPeacefulModeConfig().keepChangeWorld())
+            if (keepChangeWorld)
                 return !peacefulEnabledWorld.isEmpty();
+
+            int index = WorldIndex.of(world);
+            if (index < Long.SIZE)
+                return (peacefulWorldBits & (1L << index)) != 0;
             else
                 return peacefulEnabledWorld.contains(world.getName());
         }
 
         public void setPeacefulMode(World world, boolean enable) {
+            if (!indexed)
+                buildIndex();
+
+            if (enable) {
+                if (!peacefulEnabledWorld.contains(world.getName())) {
+                    List<String> updated = new ArrayList<>(peacefulEnabledWorld);
+                    updated.add(world.getName());
+                    peacefulEnabledWorld = updated;
+                }
+            } else if (peacefulEnabledWorld.contains(world.getName())) {
+                List<String> updated = new ArrayList<>(peacefulEnabledWorld);
+                updated.remove(world.getName());
+                peacefulEnabledWorld = updated;
+            }
+
+            int index = WorldIndex.of(world);
+            if (index < Long.SIZE) {
+                if (enable)
+                    peacefulWorldBits |= 1L << index;
+                else
+                    peacefulWorldBits &= ~(1L << index);
+            }
+        }
+
+        /**
+         * 永続化形式のワールド名リストからビットセットを構築します。
+         * デシリアライズ時はコンストラクタを経由しないため、初回参照時に実行します。
+         */
+        private void buildIndex() {
             if (peacefulEnabledWorld == null)
                 peacefulEnabledWorld = new ArrayList<>();
 
-            if (enable) {
-                if (!peacefulEnabledWorld.contains(world.getName()))
-                    peacefulEnabledWorld.add(world.getName());
-            } else
-                peacefulEnabledWorld.remove(world.getName());
+            long bits = 0L;
+            for (String worldName : peacefulEnabledWorld) {
+                int index = WorldIndex.of(worldName);
+                if (index < Long.SIZE)
+                    bits |= 1L << index;
+            }
+            peacefulWorldBits = bits;
+            indexed = true;
         }
 
 
@@ -140,12 +221,12 @@ public class MofuPlayerData {
 
         MofuPlayerData that = (MofuPlayerData) o;
 
-        return new EqualsBuilder().append(getId(), that.getId()).append(getPlayerName(), that.getPlayerName()).append(getBukkitPlayer(), that.getBukkitPlayer()).isEquals();
+        return new EqualsBuilder().append(getId(), that.getId()).append(getPlayerName(), that.getPlayerName()).isEquals();
     }
 
     @Override
     public int hashCode() {
-        return new HashCodeBuilder(17, 37).append(getId()).append(getPlayerName()).append(getBukkitPlayer()).toHashCode();
+        return new HashCodeBuilder(17, 37).append(getId()).append(getPlayerName()).toHashCode();
     }
 
     @Override
@@ -153,7 +234,6 @@ public class MofuPlayerData {
         return "MofuPlayerData{" +
                 "id=" + id +
                 ", playerName='" + playerName + '\'' +
-                ", bukkitPlayer=" + bukkitPlayer +
                 ", settings=" + settings +
                 '}';
     }
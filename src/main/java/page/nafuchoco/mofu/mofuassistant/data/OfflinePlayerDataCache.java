@@ -0,0 +1,108 @@
+/*
+ * Copyright 2021 NAFU_at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package page.nafuchoco.mofu.mofuassistant.data;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * オフラインのプレイヤーのデータを保持する、件数と有効期限に上限のあるLRUキャッシュ
+ */
+public class OfflinePlayerDataCache {
+    private final int maxSize;
+    private final long ttlMillis;
+    private final LinkedHashMap<UUID, Entry> entries;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public OfflinePlayerDataCache(int maxSize, long ttlMillis) {
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, Entry> eldest) {
+                if (size() > OfflinePlayerDataCache.this.maxSize) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * キャッシュされているプレイヤーデータを返します。
+     *
+     * @param id プレイヤーのUUID
+     * @return プレイヤーデータ、存在しないか有効期限が切れている場合はnull
+     */
+    public synchronized MofuPlayerData get(UUID id) {
+        Entry entry = entries.get(id);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        if (System.currentTimeMillis() - entry.cachedAt() > ttlMillis) {
+            entries.remove(id);
+            evictions++;
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.playerData();
+    }
+
+    /**
+     * キャッシュからプレイヤーデータを破棄します。プレイヤーがログインした際に使用します。
+     * 他のサーバーで変更されている可能性があるため、ログイン時はキャッシュの内容を使用しません。
+     *
+     * @param id プレイヤーのUUID
+     */
+    public synchronized void invalidate(UUID id) {
+        entries.remove(id);
+    }
+
+    public synchronized void put(UUID id, MofuPlayerData playerData) {
+        if (maxSize > 0)
+            entries.put(id, new Entry(playerData, System.currentTimeMillis()));
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized Stats getStats() {
+        return new Stats(hits, misses, evictions, entries.size());
+    }
+
+
+    private record Entry(MofuPlayerData playerData, long cachedAt) {
+    }
+
+    /**
+     * キャッシュの統計情報
+     *
+     * @param hits      キャッシュから返された回数
+     * @param misses    キャッシュに存在しなかった回数
+     * @param evictions 件数の上限または有効期限により破棄された件数
+     * @param size      現在の件数
+     */
+    public record Stats(long hits, long misses, long evictions, int size) {
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2021 NAFU_at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package page.nafuchoco.mofu.mofuassistant.data;
+
+import org.bukkit.NamespacedKey;
+import org.bukkit.entity.Player;
+import org.bukkit.persistence.PersistentDataType;
+import page.nafuchoco.mofu.mofuassistant.MofuAssistant;
+
+import java.io.IOException;
+import java.util.logging.Level;
+
+/**
+ * PlayerSettingsをプレイヤーのPersistentDataContainerに保存するストレージ
+ * データはプレイヤーファイルと共に保存されるため、読み込みにデータベースを使用しない
+ * PersistentDataContainerはメインスレッドからのみ操作する
+ */
+public class PersistentDataPlayerStorage {
+    private final MofuAssistant plugin;
+    private final NamespacedKey settingsKey;
+
+    public PersistentDataPlayerStorage(MofuAssistant plugin) {
+        this.plugin = plugin;
+        this.settingsKey = new NamespacedKey(plugin, "player_settings");
+    }
+
+    /**
+     * プレイヤーに設定が保存されているかどうかを返します。
+     * 保存されていない場合は、データベースからの移行が必要です。
+     *
+     * @param player 対象のプレイヤー
+     * @return 保存されている場合はtrue
+     */
+    public boolean has(Player player) {
+        return player.getPersistentDataContainer().has(settingsKey, PersistentDataType.BYTE_ARRAY);
+    }
+
+    /**
+     * プレイヤーに保存されている設定を読み込みます。
+     *
+     * @param player 対象のプレイヤー
+     * @return プレイヤー設定、保存されていない場合はnull
+     */
+    public MofuPlayerData.PlayerSettings load(Player player) {
+        byte[] data = player.getPersistentDataContainer().get(settingsKey, PersistentDataType.BYTE_ARRAY);
+        if (data == null)
+            return null;
+
+        try {
+            return PlayerSettingsCodec.decode(data);
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Failed to decode the player settings of " + player.getName() + ". Using the default settings.", e);
+            return new MofuPlayerData.PlayerSettings();
+        }
+    }
+
+    public void save(Player player, MofuPlayerData.PlayerSettings settings) {
+        player.getPersistentDataContainer().set(settingsKey, PersistentDataType.BYTE_ARRAY, PlayerSettingsCodec.encode(settings));
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2021 NAFU_at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package page.nafuchoco.mofu.mofuassistant.data;
+
+import lombok.val;
+import page.nafuchoco.mofu.mofuassistant.MofuAssistant;
+import page.nafuchoco.mofu.mofuassistant.metrics.PluginMetrics;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * プレイヤーデータの読み込み要求をまとめるローダー
+ * 短い時間内に要求されたUUIDは重複を除いて1回のクエリで読み込まれ、結果はそれぞれの要求元にFutureで返される
+ */
+public class PlayerDataBatchLoader {
+    private final MofuAssistant plugin;
+    private final long windowMillis;
+    private final int maxBatchSize;
+    private final Object lock;
+    private final PluginMetrics.Histogram batchSize;
+    private final PluginMetrics.Histogram latencyMicros;
+    // 次のバッチで読み込むプレイヤー (lockで保護される)
+    private Map<UUID, Request> pending;
+
+    public PlayerDataBatchLoader(MofuAssistant plugin, long windowMillis, int maxBatchSize) {
+        this.plugin = plugin;
+        this.windowMillis = windowMillis;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.lock = new Object();
+        this.batchSize = plugin.getMetrics().histogram("playerdata.batch.size");
+        this.latencyMicros = plugin.getMetrics().histogram("playerdata.batch.latencyMicros");
+        this.pending = new HashMap<>();
+    }
+
+    /**
+     * プレイヤーデータの読み込みを要求します。
+     * データベース処理用のスレッドから呼び出して結果を待機すると、バッチを処理するスレッドが不足する可能性があるため注意してください。
+     *
+     * @param uuid プレイヤーのUUID
+     * @return プレイヤーデータを返すFuture、データが存在しない場合はnullを返す
+     */
+    public CompletableFuture<MofuPlayerData> load(UUID uuid) {
+        Request request;
+        Map<UUID, Request> fullBatch = null;
+        boolean firstInWindow = false;
+        synchronized (lock) {
+            request = pending.get(uuid);
+            if (request == null) {
+                request = new Request(new CompletableFuture<>(), System.nanoTime());
+                pending.put(uuid, request);
+                firstInWindow = pending.size() == 1;
+                if (pending.size() >= maxBatchSize) {
+                    fullBatch = pending;
+                    pending = new HashMap<>();
+                }
+            }
+        }
+
+        if (fullBatch != null) {
+            submit(fullBatch);
+        } else if (firstInWindow) {
+            // 待機時間の経過後に、それまでに集まった要求をまとめて読み込む
+            CompletableFuture.delayedExecutor(windowMillis, TimeUnit.MILLISECONDS).execute(this::submitPending);
+        }
+        return request.future();
+    }
+
+    private void submitPending() {
+        Map<UUID, Request> batch;
+        synchronized (lock) {
+            if (pending.isEmpty())
+                return;
+            batch = pending;
+            pending = new HashMap<>();
+        }
+        submit(batch);
+    }
+
+    private void submit(Map<UUID, Request> batch) {
+        val executor = plugin.getConnector().getExecutor();
+        try {
+            executor.execute(() -> dispatch(batch));
+        } catch (RejectedExecutionException e) {
+            if (executor.isShutdown()) {
+                // 停止処理中は呼び出し元のスレッドで読み込む
+                dispatch(batch);
+            } else {
+                // キューが溢れている場合は、呼び出し元 (メインスレッドの場合もある) をブロックしないよう失敗させる
+                batch.values().forEach(request -> request.future().completeExceptionally(e));
+            }
+        }
+    }
+
+    private void dispatch(Map<UUID, Request> batch) {
+        batchSize.record(batch.size());
+        Map<UUID, MofuPlayerData> loaded;
+        try {
+            loaded = plugin.getMofuAssistantTable().getPlayerData(batch.keySet());
+        } catch (Throwable e) {
+            // 予期しない例外でも要求元が待機し続けないよう、全ての要求を失敗させる
+            batch.values().forEach(request -> request.future().completeExceptionally(e));
+            return;
+        }
+
+        val now = System.nanoTime();
+        batch.forEach((uuid, request) -> {
+            latencyMicros.record(TimeUnit.NANOSECONDS.toMicros(now - request.requestedAt()));
+            request.future().complete(loaded.get(uuid));
+        });
+    }
+
+
+    private record Request(CompletableFuture<MofuPlayerData> future, long requestedAt) {
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2021 NAFU_at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package page.nafuchoco.mofu.mofuassistant.data;
+
+import java.util.UUID;
+
+/**
+ * プレイヤーデータの読み込みに失敗したことを表す例外
+ * データが存在しない場合 (null) と区別するために使用し、この場合は初期設定での登録や保持を行わない
+ */
+public class PlayerDataLoadException extends RuntimeException {
+    private final UUID playerId;
+
+    public PlayerDataLoadException(UUID playerId, Throwable cause) {
+        super("Failed to load the player data: " + playerId, cause);
+        this.playerId = playerId;
+    }
+
+    public UUID getPlayerId() {
+        return playerId;
+    }
+}
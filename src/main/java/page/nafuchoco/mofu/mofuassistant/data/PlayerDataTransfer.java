@@ -0,0 +1,277 @@
+/*
+ * Copyright 2021 NAFU_at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package page.nafuchoco.mofu.mofuassistant.data;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.val;
+import org.bukkit.Bukkit;
+import page.nafuchoco.mofu.mofuassistant.MofuAssistant;
+import page.nafuchoco.mofu.mofuassistant.database.MofuAssistantTable;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * プレイヤーデータのテーブルをファイルに書き出し、ファイルから読み込むクラス
+ * 1行ずつ読み書きするため、行数に関係なく一定のメモリで処理できる
+ * <p>
+ * バイナリ形式 (gzip圧縮):
+ * <pre>
+ * int     マジックナンバー (MAPD)
+ * byte    バージョン (1)
+ * 各行:   byte 1, long UUID上位, long UUID下位, boolean 名前の有無, (UTF 名前), int 設定のバイト数, bytes 設定 (PlayerSettingsCodec)
+ * byte    終端 (0)
+ * </pre>
+ */
+public class PlayerDataTransfer {
+    private static final int BINARY_MAGIC = 0x4D415044;
+    private static final int BINARY_VERSION = 1;
+    private static final int IMPORT_BATCH_SIZE = 1000;
+    private static final long PROGRESS_INTERVAL = 100_000;
+    // 圧縮されたストリームでは残りのバイト数が分からないため、設定データの大きさに上限を設ける
+    private static final int MAX_SETTINGS_SIZE = 1 << 20;
+
+    private final MofuAssistant plugin;
+    private final File directory;
+    private final ObjectMapper mapper;
+    private final AtomicBoolean running;
+
+    public PlayerDataTransfer(MofuAssistant plugin) {
+        this.plugin = plugin;
+        this.directory = new File(plugin.getDataFolder(), "transfer");
+        this.mapper = new ObjectMapper();
+        this.running = new AtomicBoolean();
+    }
+
+    /**
+     * ファイル名を転送用のディレクトリ内のファイルに変換します。
+     *
+     * @param name ファイル名
+     * @return ファイル、ディレクトリの外を指している場合はnull
+     */
+    public File resolve(String name) {
+        val file = new File(directory, name);
+        try {
+            if (!file.getCanonicalPath().startsWith(directory.getCanonicalPath() + File.separator))
+                return null;
+        } catch (IOException e) {
+            return null;
+        }
+        return file;
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    /**
+     * プレイヤーデータのテーブルを非同期でファイルに書き出します。
+     * 失敗した場合、書き出し途中のファイルは削除されます。
+     *
+     * @param file   書き出し先のファイル
+     * @param format ファイルの形式
+     * @return 書き出した行数を返すFuture、他の転送を実行中の場合はnull
+     */
+    public CompletableFuture<Long> exportAsync(File file, Format format) {
+        return runAsync(() -> {
+            // 書き込み待ちの変更も含めて書き出すため、先に書き込んでおく
+            plugin.getPlayerDataWriteQueue().flush();
+            Files.createDirectories(directory.toPath());
+            try (var output = new BufferedOutputStream(new FileOutputStream(file))) {
+                long count = format == Format.JSONL ? exportJsonLines(output) : exportBinary(output);
+                plugin.getLogger().log(Level.INFO, "Exported " + count + " player data rows to " + file.getName() + ".");
+                return count;
+            } catch (IOException | SQLException e) {
+                Files.deleteIfExists(file.toPath());
+                throw e;
+            }
+        });
+    }
+
+    /**
+     * ファイルからプレイヤーデータを非同期で読み込み、テーブルに書き込みます。
+     * 同じUUIDのデータが存在する場合は置き換えられます。
+     *
+     * @param file   読み込むファイル
+     * @param format ファイルの形式
+     * @return 書き込んだ行数を返すFuture、他の転送を実行中の場合はnull
+     */
+    public CompletableFuture<Long> importAsync(File file, Format format) {
+        return runAsync(() -> {
+            // 書き込み待ちの変更が読み込んだデータを上書きしないよう、先に書き込んでおく
+            plugin.getPlayerDataWriteQueue().flush();
+            try (var input = new BufferedInputStream(new FileInputStream(file))) {
+                long count = format == Format.JSONL ? importJsonLines(input) : importBinary(input);
+                plugin.getLogger().log(Level.INFO, "Imported " + count + " player data rows from " + file.getName() + ".");
+                return count;
+            }
+        });
+    }
+
+    private CompletableFuture<Long> runAsync(TransferTask task) {
+        if (!running.compareAndSet(false, true))
+            return null;
+
+        CompletableFuture<Long> future = new CompletableFuture<>();
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            try {
+                future.complete(task.run());
+            } catch (Exception e) {
+                future.completeExceptionally(e);
+            } finally {
+                running.set(false);
+            }
+        });
+        return future;
+    }
+
+    private long exportJsonLines(OutputStream output) throws IOException, SQLException {
+        val writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+        long count = plugin.getMofuAssistantTable().forEachPlayerData(playerData -> {
+            val node = mapper.createObjectNode();
+            node.put("id", playerData.getId().toString());
+            node.put("playername", playerData.getPlayerName());
+            val worlds = node.putArray("peacefulEnabledWorld");
+            playerData.getSettings().getPeacefulEnabledWorlds().forEach(worlds::add);
+            writer.write(mapper.writeValueAsString(node));
+            writer.newLine();
+        });
+        writer.flush();
+        return count;
+    }
+
+    private long exportBinary(OutputStream output) throws IOException, SQLException {
+        val gzip = new GZIPOutputStream(output);
+        val data = new DataOutputStream(gzip);
+        data.writeInt(BINARY_MAGIC);
+        data.writeByte(BINARY_VERSION);
+        long count = plugin.getMofuAssistantTable().forEachPlayerData(playerData -> {
+            data.writeByte(1);
+            data.writeLong(playerData.getId().getMostSignificantBits());
+            data.writeLong(playerData.getId().getLeastSignificantBits());
+            data.writeBoolean(playerData.getPlayerName() != null);
+            if (playerData.getPlayerName() != null)
+                data.writeUTF(playerData.getPlayerName());
+            val settings = PlayerSettingsCodec.encode(playerData.getSettings());
+            data.writeInt(settings.length);
+            data.write(settings);
+        });
+        data.writeByte(0);
+        data.flush();
+        gzip.finish();
+        return count;
+    }
+
+    private long importJsonLines(InputStream input) throws IOException, SQLException {
+        val reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        return importFrom(() -> {
+            String line;
+            do {
+                line = reader.readLine();
+                if (line == null)
+                    return null;
+            } while (line.isBlank());
+
+            val node = mapper.readTree(line);
+            val playerName = node.path("playername");
+            List<String> worlds = new ArrayList<>();
+            for (JsonNode world : node.path("peacefulEnabledWorld"))
+                worlds.add(world.asText());
+            return new MofuPlayerData(UUID.fromString(node.path("id").asText()),
+                    playerName.isTextual() ? playerName.asText() : null,
+                    new MofuPlayerData.PlayerSettings(worlds));
+        });
+    }
+
+    private long importBinary(InputStream input) throws IOException, SQLException {
+        val data = new DataInputStream(new BufferedInputStream(new GZIPInputStream(input)));
+        if (data.readInt() != BINARY_MAGIC)
+            throw new IOException("Not a player data export file.");
+        val version = data.readUnsignedByte();
+        if (version != BINARY_VERSION)
+            throw new IOException("Unsupported export file version: " + version);
+
+        return importFrom(() -> {
+            if (data.readUnsignedByte() == 0)
+                return null;
+            val id = new UUID(data.readLong(), data.readLong());
+            val playerName = data.readBoolean() ? data.readUTF() : null;
+            val length = data.readInt();
+            if (length < 0 || length > MAX_SETTINGS_SIZE)
+                throw new IOException("Corrupted export file: invalid settings length " + length);
+            val settings = new byte[length];
+            data.readFully(settings);
+            return new MofuPlayerData(id, playerName, PlayerSettingsCodec.decode(settings));
+        });
+    }
+
+    private long importFrom(MofuAssistantTable.PlayerDataSource source) throws IOException, SQLException {
+        long[] read = {0};
+        return plugin.getMofuAssistantTable().replacePlayerData(() -> {
+            val playerData = source.next();
+            if (playerData != null && ++read[0] % PROGRESS_INTERVAL == 0)
+                plugin.getLogger().log(Level.INFO, "Importing player data: " + read[0] + " rows read.");
+            return playerData;
+        }, IMPORT_BATCH_SIZE);
+    }
+
+
+    public enum Format {
+        JSONL(".jsonl"),
+        BINARY(".bin.gz");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        /**
+         * ファイル名の拡張子から形式を判定します。
+         *
+         * @param fileName ファイル名
+         * @return 形式、判定できない場合はnull
+         */
+        public static Format fromFileName(String fileName) {
+            for (Format format : values()) {
+                if (fileName.endsWith(format.extension))
+                    return format;
+            }
+            return null;
+        }
+    }
+
+    @FunctionalInterface
+    private interface TransferTask {
+        long run() throws IOException, SQLException;
+    }
+}
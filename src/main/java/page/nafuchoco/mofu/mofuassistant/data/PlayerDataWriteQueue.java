@@ -0,0 +1,138 @@
+/*
+ * Copyright 2021 NAFU_at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package page.nafuchoco.mofu.mofuassistant.data;
+
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
+import page.nafuchoco.mofu.mofuassistant.MofuAssistant;
+import page.nafuchoco.mofu.mofuassistant.metrics.PluginMetrics;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+
+/**
+ * プレイヤーデータの書き込みを遅延させてまとめるキュー
+ * 変更されたプレイヤーデータは一定間隔で非同期に1回のバッチとして書き込まれ、
+ * 同じプレイヤーに対する複数回の変更は1回の書き込みにまとめられる
+ */
+public class PlayerDataWriteQueue {
+    private final MofuAssistant plugin;
+    private final Map<UUID, MofuPlayerData> dirty;
+    // 書き込み中のプレイヤーデータ
+    private final Map<UUID, MofuPlayerData> inFlight;
+    // 古い内容が新しい内容を上書きしないよう、書き込みは同時に1つのみ実行する
+    private final Object flushLock;
+    private final PluginMetrics.Timer flushDuration;
+    private final LongAdder flushedRecords;
+    private BukkitTask task;
+
+    public PlayerDataWriteQueue(MofuAssistant plugin) {
+        this.plugin = plugin;
+        this.dirty = new ConcurrentHashMap<>();
+        this.inFlight = new ConcurrentHashMap<>();
+        this.flushLock = new Object();
+        this.flushDuration = plugin.getMetrics().timer("playerdata.flush");
+        this.flushedRecords = plugin.getMetrics().counter("playerdata.flushed");
+        plugin.getMetrics().gauge("playerdata.queue.depth", dirty::size);
+    }
+
+    public void start(int flushIntervalTicks) {
+        stop();
+        task = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, this::flush, flushIntervalTicks, flushIntervalTicks);
+    }
+
+    /**
+     * 定期的な書き込みを停止し、残っている変更を同期的に書き込みます。
+     */
+    public void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        flush();
+    }
+
+    /**
+     * プレイヤーデータを変更済みとして書き込みを予約します。
+     *
+     * @param playerData 変更されたプレイヤーデータ
+     */
+    public void markDirty(MofuPlayerData playerData) {
+        dirty.put(playerData.getId(), playerData);
+    }
+
+    /**
+     * まだデータベースに書き込まれていないプレイヤーデータを返します。
+     * データベースから読み込む前に確認することで、書き込み前の古い内容を読み込むことを防ぎます。
+     *
+     * @param id プレイヤーのUUID
+     * @return 書き込み待ちのプレイヤーデータ、存在しない場合はnull
+     */
+    public MofuPlayerData getPending(UUID id) {
+        MofuPlayerData playerData = dirty.get(id);
+        return playerData != null ? playerData : inFlight.get(id);
+    }
+
+    /**
+     * 予約されている書き込みを非同期で実行します。
+     */
+    public void flushAsync() {
+        if (!dirty.isEmpty())
+            Bukkit.getScheduler().runTaskAsynchronously(plugin, this::flush);
+    }
+
+    /**
+     * 予約されている書き込みを呼び出したスレッドで実行します。
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            if (dirty.isEmpty())
+                return;
+
+            long startedAt = System.nanoTime();
+            List<MofuPlayerData> batch = new ArrayList<>(dirty.size());
+            for (UUID id : dirty.keySet()) {
+                MofuPlayerData playerData = dirty.get(id);
+                if (playerData == null)
+                    continue;
+                // getPendingから常に参照できるよう、書き込み中として登録してからキューから外す
+                inFlight.put(id, playerData);
+                dirty.remove(id, playerData);
+                batch.add(playerData);
+            }
+
+            try {
+                plugin.getMofuAssistantTable().updatePlayerData(batch);
+                flushedRecords.add(batch.size());
+            } catch (SQLException e) {
+                plugin.getLogger().log(Level.WARNING, "Failed to write the player data. It will be retried on the next flush.", e);
+                // 書き込み中に新しい変更が予約された場合はそちらを優先する
+                for (MofuPlayerData playerData : batch)
+                    dirty.putIfAbsent(playerData.getId(), playerData);
+            } finally {
+                inFlight.clear();
+            }
+            flushDuration.record(System.nanoTime() - startedAt);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2021 NAFU_at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package page.nafuchoco.mofu.mofuassistant.data;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * PlayerSettingsをデータベースに保存するためのバイナリ形式の変換クラス
+ * <p>
+ * 形式 (バージョン1):
+ * <pre>
+ * byte    バージョン (1)
+ * byte    フラグ (予約、常に0)
+ * varint  ピースフルモードが有効なワールドの数
+ * 各ワールド: varint UTF-8のバイト数, bytes ワールド名
+ * </pre>
+ * WorldIndexのインデックスはサーバーの起動ごとに変わるため、ワールドは名前で保存する
+ */
+public final class PlayerSettingsCodec {
+    public static final int CURRENT_VERSION = 1;
+
+    private static final ObjectMapper legacyMapper = new ObjectMapper();
+
+    private PlayerSettingsCodec() {
+        throw new UnsupportedOperationException();
+    }
+
+    public static byte[] encode(MofuPlayerData.PlayerSettings settings) {
+        List<String> worlds = settings.getPeacefulEnabledWorlds();
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(3 + worlds.size() * 16);
+        buffer.write(CURRENT_VERSION);
+        buffer.write(0);
+        writeVarInt(buffer, worlds.size());
+        for (String world : worlds) {
+            byte[] bytes = world.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(buffer, bytes.length);
+            buffer.write(bytes, 0, bytes.length);
+        }
+        return buffer.toByteArray();
+    }
+
+    /**
+     * バイナリ形式のデータからPlayerSettingsを復元します。
+     *
+     * @param data エンコードされたデータ
+     * @return 復元されたPlayerSettings
+     * @throws IOException 未対応のバージョンか、データが壊れている場合
+     */
+    public static MofuPlayerData.PlayerSettings decode(byte[] data) throws IOException {
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(data));
+        int version = input.readUnsignedByte();
+        if (version != CURRENT_VERSION)
+            throw new IOException("Unsupported player settings version: " + version);
+        input.readUnsignedByte(); // フラグ
+
+        int count = readLength(input);
+        List<String> worlds = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte[] bytes = new byte[readLength(input)];
+            input.readFully(bytes);
+            worlds.add(new String(bytes, StandardCharsets.UTF_8));
+        }
+        return new MofuPlayerData.PlayerSettings(worlds);
+    }
+
+    /**
+     * 以前のバージョンで保存されたJSON形式のデータからPlayerSettingsを復元します。
+     *
+     * @param json JSON形式のデータ
+     * @return 復元されたPlayerSettings
+     * @throws IOException JSONの解析に失敗した場合
+     */
+    public static MofuPlayerData.PlayerSettings decodeLegacyJson(String json) throws IOException {
+        List<String> worlds = new ArrayList<>();
+        JsonNode worldsNode = legacyMapper.readTree(json).path("peacefulEnabledWorld");
+        for (JsonNode world : worldsNode)
+            worlds.add(world.asText());
+        return new MofuPlayerData.PlayerSettings(worlds);
+    }
+
+    private static void writeVarInt(ByteArrayOutputStream buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer.write(value);
+    }
+
+    private static int readVarInt(DataInputStream input) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = input.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("VarInt is too long.");
+    }
+
+    /**
+     * 要素数やバイト数を読み込みます。
+     * 各要素は1バイト以上あるため、残りのバイト数を超える値は壊れたデータとして扱います。
+     */
+    private static int readLength(DataInputStream input) throws IOException {
+        int length = readVarInt(input);
+        if (length < 0 || length > input.available())
+            throw new IOException("Corrupted player settings data: invalid length " + length);
+        return length;
+    }
+}
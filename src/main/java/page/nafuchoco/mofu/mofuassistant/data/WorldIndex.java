@@ -0,0 +1,89 @@
+/*
+ * Copyright 2021 NAFU_at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package page.nafuchoco.mofu.mofuassistant.data;
+
+import org.bukkit.World;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ワールド名を小さな整数のインデックスに割り当てるレジストリ
+ * インデックスはサーバーの起動中のみ有効で、永続化には使用しない
+ */
+public final class WorldIndex {
+    private static final Map<String, Integer> indexes = new ConcurrentHashMap<>();
+    private static final AtomicInteger nextIndex = new AtomicInteger();
+    // インデックスをそのまま添字とするWorldの配列 (読み込まれていないワールドはnull)
+    private static volatile World[] worlds = new World[0];
+
+    private WorldIndex() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * ワールド名に対応するインデックスを返します。
+     * 初めて参照されたワールド名には新しいインデックスが割り当てられます。
+     *
+     * @param worldName ワールド名
+     * @return ワールドのインデックス
+     */
+    public static int of(String worldName) {
+        return indexes.computeIfAbsent(worldName, name -> nextIndex.getAndIncrement());
+    }
+
+    /**
+     * ワールドに対応するインデックスを返します。
+     * 2回目以降の呼び出しは文字列のハッシュ計算を行わず、参照の比較のみで解決されます。
+     *
+     * @param world ワールド
+     * @return ワールドのインデックス
+     */
+    public static int of(World world) {
+        World[] slots = worlds;
+        for (int i = 0; i < slots.length; i++) {
+            if (slots[i] == world)
+                return i;
+        }
+        return bind(world);
+    }
+
+    /**
+     * アンロードされたワールドへの参照を解放します。
+     * インデックス自体はワールド名に対して維持されます。
+     *
+     * @param world アンロードされたワールド
+     */
+    public static synchronized void release(World world) {
+        World[] slots = worlds.clone();
+        for (int i = 0; i < slots.length; i++) {
+            if (slots[i] == world)
+                slots[i] = null;
+        }
+        worlds = slots;
+    }
+
+    private static synchronized int bind(World world) {
+        int index = of(world.getName());
+        World[] slots = Arrays.copyOf(worlds, Math.max(worlds.length, index + 1));
+        slots[index] = world;
+        worlds = slots;
+        return index;
+    }
+}
@@ -29,122 +29,49 @@ public class CommunityDistributionTable extends DatabaseTable {
         super(tablename, connector);
     }
 
-    public void createTable() throws SQLException {
-        try (Connection connection = getConnector().getConnection()) {
-            // テーブルを作成
-            try (PreparedStatement ps = connection.prepareStatement(
-                    "CREATE TABLE IF NOT EXISTS " + getTablename() + " (" +
-                            "cycle_id INT NOT NULL, " +
-                            "player_id VARCHAR(36) NOT NULL, " +
-                            "community_name VARCHAR(255) NOT NULL, " +
-                            "last_claim_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
-                            "claimed_amount INT DEFAULT 0, " +
-                            "PRIMARY KEY (cycle_id, player_id, community_name)" +
-                            ")")) {
-                ps.execute();
-            }
+    @Override
+    public List<MigrationStep> getMigrationSteps() {
+        return List.of(
+                this::createTable,
+                this::migrateTableIfNeeded
+        );
+    }
 
-            // 既存テーブルにcycle_idカラムが存在しない場合は追加（マイグレーション）
-            migrateTableIfNeeded(connection);
+    private void createTable(Connection connection) throws SQLException {
+        // テーブルを作成
+        try (PreparedStatement ps = connection.prepareStatement(
+                "CREATE TABLE IF NOT EXISTS " + getTablename() + " (" +
+                        "cycle_id INT NOT NULL, " +
+                        "player_id VARCHAR(36) NOT NULL, " +
+                        "community_name VARCHAR(255) NOT NULL, " +
+                        "last_claim_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                        "claimed_amount INT DEFAULT 0, " +
+                        "PRIMARY KEY (cycle_id, player_id, community_name)" +
+                        ")")) {
+            ps.execute();
         }
     }
 
     /**
      * 古いテーブル構造から新しい構造へマイグレーション
+     * テーブルは直前のステップで作成済みのため、cycle_idカラムの有無のみを確認する
+     * MySQL/MariaDBではDDLがロールバックされないため、途中で失敗した場合も再実行できるようにする
      */
     private void migrateTableIfNeeded(Connection connection) throws SQLException {
-        // テーブルが存在するかチェック
-        boolean tableExists = false;
-        if (getConnector().isSQLite()) {
-            try (PreparedStatement ps = connection.prepareStatement(
-                    "SELECT name FROM sqlite_master WHERE type='table' AND name=?")) {
-                ps.setString(1, getTablename());
-                try (ResultSet rs = ps.executeQuery()) {
-                    tableExists = rs.next();
-                }
-            }
-        } else {
-            try (PreparedStatement ps = connection.prepareStatement(
-                    "SELECT TABLE_NAME FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_NAME = ?")) {
-                ps.setString(1, getTablename());
-                try (ResultSet rs = ps.executeQuery()) {
-                    tableExists = rs.next();
-                }
-            }
-        }
-
-        // テーブルが存在しない場合は何もしない（CREATE TABLE IF NOT EXISTSで作成される）
-        if (!tableExists) {
-            return;
-        }
-
-        // テーブルのカラム情報を取得
-        boolean hasCycleId = false;
-
-        if (getConnector().isSQLite()) {
-            try (PreparedStatement ps = connection.prepareStatement(
-                    "PRAGMA table_info(" + getTablename() + ")")) {
-                try (ResultSet rs = ps.executeQuery()) {
-                    while (rs.next()) {
-                        String columnName = rs.getString("name");
-                        if ("cycle_id".equals(columnName)) {
-                            hasCycleId = true;
-                            break;
-                        }
-                    }
-                }
-            }
-        } else {
-            // MySQL/MariaDBの場合
-            try (PreparedStatement ps = connection.prepareStatement(
-                    "SELECT COLUMN_NAME FROM INFORMATION_SCHEMA.COLUMNS " +
-                    "WHERE TABLE_NAME = ? AND COLUMN_NAME = 'cycle_id'")) {
-                ps.setString(1, getTablename());
-                try (ResultSet rs = ps.executeQuery()) {
-                    hasCycleId = rs.next();
-                }
-            }
-        }
-
         // cycle_idカラムが存在しない場合
-        if (!hasCycleId) {
-            // 古いデータをバックアップして削除（cycle_idなしのデータは不整合があるため）
+        if (!getConnector().getDialect().columnExists(connection, getTablename(), "cycle_id")) {
+            // 以前のバージョンで残された可能性のあるバックアップを削除
             try (PreparedStatement ps = connection.prepareStatement(
                     "DROP TABLE IF EXISTS " + getTablename() + "_old")) {
                 ps.execute();
             }
 
-            // テーブルをリネーム
-            if (getConnector().isSQLite()) {
-                try (PreparedStatement ps = connection.prepareStatement(
-                        "ALTER TABLE " + getTablename() + " RENAME TO " + getTablename() + "_old")) {
-                    ps.execute();
-                }
-            } else {
-                try (PreparedStatement ps = connection.prepareStatement(
-                        "RENAME TABLE " + getTablename() + " TO " + getTablename() + "_old")) {
-                    ps.execute();
-                }
-            }
-
-            // 新しい構造でテーブルを再作成
-            try (PreparedStatement ps = connection.prepareStatement(
-                    "CREATE TABLE " + getTablename() + " (" +
-                            "cycle_id INT NOT NULL, " +
-                            "player_id VARCHAR(36) NOT NULL, " +
-                            "community_name VARCHAR(255) NOT NULL, " +
-                            "last_claim_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
-                            "claimed_amount INT DEFAULT 0, " +
-                            "PRIMARY KEY (cycle_id, player_id, community_name)" +
-                            ")")) {
-                ps.execute();
-            }
-
-            // 古いテーブルを削除
+            // cycle_idなしのデータは不整合があるため破棄し、新しい構造でテーブルを再作成
             try (PreparedStatement ps = connection.prepareStatement(
-                    "DROP TABLE IF EXISTS " + getTablename() + "_old")) {
+                    "DROP TABLE IF EXISTS " + getTablename())) {
                 ps.execute();
             }
+            createTable(connection);
         }
     }
 
@@ -152,71 +79,35 @@ public class CommunityDistributionTable extends DatabaseTable {
      * プレイヤーの配布履歴を記録または更新（増分）
      */
     public void addClaim(int cycleId, UUID playerId, String communityName, int amount) throws SQLException {
-        Timestamp now = new Timestamp(System.currentTimeMillis());
-
-        if (getConnector().isSQLite()) {
-            // SQLiteの場合は、既存レコードがあるかチェックしてINSERTまたはUPDATE
-            try (Connection connection = getConnector().getConnection()) {
-                // 既存のレコードを確認
-                Integer currentAmount = null;
-                try (PreparedStatement ps = connection.prepareStatement(
-                        "SELECT claimed_amount FROM " + getTablename() +
-                        " WHERE cycle_id = ? AND player_id = ? AND community_name = ?")) {
-                    ps.setInt(1, cycleId);
-                    ps.setString(2, playerId.toString());
-                    ps.setString(3, communityName);
-                    try (ResultSet rs = ps.executeQuery()) {
-                        if (rs.next()) {
-                            currentAmount = rs.getInt("claimed_amount");
-                        }
-                    }
-                }
+        SqlDialect dialect = getConnector().getDialect();
+        try (Connection connection = getConnector().getConnection();
+             PreparedStatement ps = connection.prepareStatement(dialect.upsert(getTablename(),
+                     List.of("cycle_id", "player_id", "community_name", "last_claim_time", "claimed_amount"),
+                     List.of("cycle_id", "player_id", "community_name"),
+                     "claimed_amount = claimed_amount + " + dialect.inserted("claimed_amount") +
+                             ", last_claim_time = " + dialect.inserted("last_claim_time")))) {
+            ps.setInt(1, cycleId);
+            ps.setString(2, playerId.toString());
+            ps.setString(3, communityName);
+            ps.setTimestamp(4, new Timestamp(System.currentTimeMillis()));
+            ps.setInt(5, amount);
+            ps.executeUpdate();
+        }
+    }
 
-                if (currentAmount == null) {
-                    // 新規挿入
-                    try (PreparedStatement ps = connection.prepareStatement(
-                            "INSERT INTO " + getTablename() +
-                            " (cycle_id, player_id, community_name, last_claim_time, claimed_amount) " +
-                            "VALUES (?, ?, ?, ?, ?)")) {
-                        ps.setInt(1, cycleId);
-                        ps.setString(2, playerId.toString());
-                        ps.setString(3, communityName);
-                        ps.setTimestamp(4, now);
-                        ps.setInt(5, amount);
-                        ps.executeUpdate();
-                    }
-                } else {
-                    // 加算更新
-                    try (PreparedStatement ps = connection.prepareStatement(
-                            "UPDATE " + getTablename() +
-                            " SET claimed_amount = claimed_amount + ?, last_claim_time = ? " +
-                            "WHERE cycle_id = ? AND player_id = ? AND community_name = ?")) {
-                        ps.setInt(1, amount);
-                        ps.setTimestamp(2, now);
-                        ps.setInt(3, cycleId);
-                        ps.setString(4, playerId.toString());
-                        ps.setString(5, communityName);
-                        ps.executeUpdate();
-                    }
-                }
-            }
-        } else {
-            // MySQL/MariaDBの場合はON DUPLICATE KEY UPDATEを使用
-            try (Connection connection = getConnector().getConnection();
-                 PreparedStatement ps = connection.prepareStatement(
-                         "INSERT INTO " + getTablename() +
-                         " (cycle_id, player_id, community_name, last_claim_time, claimed_amount) " +
-                         "VALUES (?, ?, ?, ?, ?) " +
-                         "ON DUPLICATE KEY UPDATE claimed_amount = claimed_amount + ?, last_claim_time = ?")) {
-                ps.setInt(1, cycleId);
-                ps.setString(2, playerId.toString());
-                ps.setString(3, communityName);
-                ps.setTimestamp(4, now);
-                ps.setInt(5, amount);
-                ps.setInt(6, amount);
-                ps.setTimestamp(7, now);
-                ps.executeUpdate();
-            }
+    /**
+     * 記録した配布履歴から指定数量を取り消す（付与できなかった場合の払い戻し）
+     */
+    public void revertClaim(int cycleId, UUID playerId, String communityName, int amount) throws SQLException {
+        try (Connection connection = getConnector().getConnection();
+             PreparedStatement ps = connection.prepareStatement(
+                     "UPDATE " + getTablename() + " SET claimed_amount = claimed_amount - ? " +
+                             "WHERE cycle_id = ? AND player_id = ? AND community_name = ?")) {
+            ps.setInt(1, amount);
+            ps.setInt(2, cycleId);
+            ps.setString(3, playerId.toString());
+            ps.setString(4, communityName);
+            ps.executeUpdate();
         }
     }
 
@@ -224,7 +115,7 @@ public class CommunityDistributionTable extends DatabaseTable {
      * プレイヤーの特定サイクル・コミュニティでの配布履歴を取得
      */
     public CommunityDistributionData getDistribution(int cycleId, UUID playerId, String communityName) throws SQLException {
-        try (Connection connection = getConnector().getConnection();
+        try (Connection connection = getConnector().getReadConnection();
              PreparedStatement ps = connection.prepareStatement(
                      "SELECT * FROM " + getTablename() +
                      " WHERE cycle_id = ? AND player_id = ? AND community_name = ?")) {
@@ -252,7 +143,7 @@ public class CommunityDistributionTable extends DatabaseTable {
      */
     public List<CommunityDistributionData> getPlayerDistributions(UUID playerId) throws SQLException {
         List<CommunityDistributionData> distributions = new ArrayList<>();
-        try (Connection connection = getConnector().getConnection();
+        try (Connection connection = getConnector().getReadConnection();
              PreparedStatement ps = connection.prepareStatement(
                      "SELECT * FROM " + getTablename() + " WHERE player_id = ?")) {
             ps.setString(1, playerId.toString());
@@ -277,7 +168,7 @@ public class CommunityDistributionTable extends DatabaseTable {
      */
     public List<CommunityDistributionData> getCommunityDistributions(int cycleId, String communityName) throws SQLException {
         List<CommunityDistributionData> distributions = new ArrayList<>();
-        try (Connection connection = getConnector().getConnection();
+        try (Connection connection = getConnector().getReadConnection();
              PreparedStatement ps = connection.prepareStatement(
                      "SELECT * FROM " + getTablename() +
                      " WHERE cycle_id = ? AND community_name = ?")) {
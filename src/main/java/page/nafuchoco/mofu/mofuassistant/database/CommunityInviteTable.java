@@ -29,83 +29,35 @@ public class CommunityInviteTable extends DatabaseTable {
         super(tablename, connector);
     }
 
-    public void createTable() throws SQLException {
-        try (Connection connection = getConnector().getConnection();
-             PreparedStatement ps = connection.prepareStatement(
-                     "CREATE TABLE IF NOT EXISTS " + getTablename() + " (" +
-                             "player_id VARCHAR(36) NOT NULL, " +
-                             "community_name VARCHAR(255) NOT NULL, " +
-                             "inviter_id VARCHAR(36) NOT NULL, " +
-                             "invited_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
-                             "PRIMARY KEY (player_id, community_name)" +
-                             ")")) {
-            ps.execute();
-        }
+    @Override
+    public List<MigrationStep> getMigrationSteps() {
+        return List.of(
+                this::createTable
+        );
+    }
+
+    private void createTable(Connection connection) throws SQLException {
+        createTable(connection,
+                "player_id VARCHAR(36) NOT NULL, " +
+                        "community_name VARCHAR(255) NOT NULL, " +
+                        "inviter_id VARCHAR(36) NOT NULL, " +
+                        "invited_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                        "PRIMARY KEY (player_id, community_name)");
     }
 
     /**
      * 招待を作成または更新
      */
     public void createInvite(UUID playerId, String communityName, UUID inviterId) throws SQLException {
-        Timestamp now = new Timestamp(System.currentTimeMillis());
-
-        if (getConnector().isSQLite()) {
-            // SQLiteの場合
-            try (Connection connection = getConnector().getConnection()) {
-                // 既存の招待を確認
-                boolean exists = false;
-                try (PreparedStatement ps = connection.prepareStatement(
-                        "SELECT 1 FROM " + getTablename() +
-                        " WHERE player_id = ? AND community_name = ?")) {
-                    ps.setString(1, playerId.toString());
-                    ps.setString(2, communityName);
-                    try (ResultSet rs = ps.executeQuery()) {
-                        exists = rs.next();
-                    }
-                }
-
-                if (exists) {
-                    // 更新
-                    try (PreparedStatement ps = connection.prepareStatement(
-                            "UPDATE " + getTablename() +
-                            " SET inviter_id = ?, invited_at = ? " +
-                            "WHERE player_id = ? AND community_name = ?")) {
-                        ps.setString(1, inviterId.toString());
-                        ps.setTimestamp(2, now);
-                        ps.setString(3, playerId.toString());
-                        ps.setString(4, communityName);
-                        ps.executeUpdate();
-                    }
-                } else {
-                    // 新規挿入
-                    try (PreparedStatement ps = connection.prepareStatement(
-                            "INSERT INTO " + getTablename() +
-                            " (player_id, community_name, inviter_id, invited_at) " +
-                            "VALUES (?, ?, ?, ?)")) {
-                        ps.setString(1, playerId.toString());
-                        ps.setString(2, communityName);
-                        ps.setString(3, inviterId.toString());
-                        ps.setTimestamp(4, now);
-                        ps.executeUpdate();
-                    }
-                }
-            }
-        } else {
-            // MySQL/MariaDBの場合はON DUPLICATE KEY UPDATEを使用
-            try (Connection connection = getConnector().getConnection();
-                 PreparedStatement ps = connection.prepareStatement(
-                         "INSERT INTO " + getTablename() +
-                         " (player_id, community_name, inviter_id, invited_at) " +
-                         "VALUES (?, ?, ?, ?) " +
-                         "ON DUPLICATE KEY UPDATE inviter_id = ?, invited_at = ?")) {
-                ps.setString(1, playerId.toString());
-                ps.setString(2, communityName);
-                ps.setString(3, inviterId.toString());
-                ps.setTimestamp(4, now);
-                ps.setString(5, inviterId.toString());
-                ps.setTimestamp(6, now);
-                ps.executeUpdate();
-            }
+        try (Connection connection = getConnector().getConnection();
+             PreparedStatement ps = connection.prepareStatement(getConnector().getDialect().upsert(getTablename(),
+                     List.of("player_id", "community_name", "inviter_id", "invited_at"),
+                     List.of("player_id", "community_name")))) {
+            ps.setString(1, playerId.toString());
+            ps.setString(2, communityName);
+            ps.setString(3, inviterId.toString());
+            ps.setTimestamp(4, new Timestamp(System.currentTimeMillis()));
+            ps.executeUpdate();
         }
     }
 
@@ -127,7 +79,7 @@ public class CommunityInviteTable extends DatabaseTable {
      * プレイヤーの招待を取得
      */
     public CommunityInvite getInvite(UUID playerId) throws SQLException {
-        try (Connection connection = getConnector().getConnection();
+        try (Connection connection = getConnector().getReadConnection();
              PreparedStatement ps = connection.prepareStatement(
                      "SELECT * FROM " + getTablename() + " WHERE player_id = ?")) {
             ps.setString(1, playerId.toString());
@@ -150,7 +102,7 @@ public class CommunityInviteTable extends DatabaseTable {
      * 特定プレイヤーへの特定コミュニティの招待があるかチェック
      */
     public boolean hasInvite(UUID playerId, String communityName) throws SQLException {
-        try (Connection connection = getConnector().getConnection();
+        try (Connection connection = getConnector().getReadConnection();
              PreparedStatement ps = connection.prepareStatement(
                      "SELECT 1 FROM " + getTablename() +
                      " WHERE player_id = ? AND community_name = ?")) {
@@ -168,7 +120,7 @@ public class CommunityInviteTable extends DatabaseTable {
      */
     public List<CommunityInvite> getAllInvites(UUID playerId) throws SQLException {
         List<CommunityInvite> invites = new ArrayList<>();
-        try (Connection connection = getConnector().getConnection();
+        try (Connection connection = getConnector().getReadConnection();
              PreparedStatement ps = connection.prepareStatement(
                      "SELECT * FROM " + getTablename() + " WHERE player_id = ?")) {
             ps.setString(1, playerId.toString());
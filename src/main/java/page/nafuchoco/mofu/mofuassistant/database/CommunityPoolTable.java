@@ -19,6 +19,7 @@ package page.nafuchoco.mofu.mofuassistant.database;
 import page.nafuchoco.mofu.mofuassistant.community.CommunityPool;
 
 import java.sql.*;
+import java.util.List;
 
 public class CommunityPoolTable extends DatabaseTable {
 
@@ -26,129 +27,73 @@ public class CommunityPoolTable extends DatabaseTable {
         super(tablename, connector);
     }
 
-    public void createTable() throws SQLException {
-        boolean isSQLite = getConnector().isSQLite();
+    @Override
+    public List<MigrationStep> getMigrationSteps() {
+        return List.of(
+                this::createTable
+        );
+    }
 
-        try (Connection connection = getConnector().getConnection()) {
-            String createTableSQL;
-            if (isSQLite) {
-                createTableSQL = "CREATE TABLE IF NOT EXISTS " + getTablename() + " (" +
-                        "cycle_id INTEGER NOT NULL, " +
+    private void createTable(Connection connection) throws SQLException {
+        createTable(connection,
+                "cycle_id INT NOT NULL, " +
                         "community_name VARCHAR(255) NOT NULL, " +
                         "total_amount INT NOT NULL, " +
                         "remaining_amount INT NOT NULL, " +
-                        "last_updated TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
-                        "PRIMARY KEY (cycle_id, community_name)" +
-                        ")";
-            } else {
-                createTableSQL = "CREATE TABLE IF NOT EXISTS " + getTablename() + " (" +
-                        "cycle_id INT NOT NULL, " +
-                        "community_name VARCHAR(255) NOT NULL, " +
-                        "total_amount INT NOT NULL, " +
-                        "remaining_amount INT NOT NULL, " +
-                        "last_updated TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP, " +
-                        "PRIMARY KEY (cycle_id, community_name)" +
-                        ")";
-            }
-
-            try (PreparedStatement ps = connection.prepareStatement(createTableSQL)) {
-                ps.execute();
-            }
-        }
+                        "last_updated " + getConnector().getDialect().updatedTimestamp() + ", " +
+                        "PRIMARY KEY (cycle_id, community_name)");
     }
 
     /**
      * コミュニティプールを作成または初期化
      */
     public void createOrResetPool(int cycleId, String communityName, int totalAmount) throws SQLException {
-        Timestamp now = new Timestamp(System.currentTimeMillis());
-
-        if (getConnector().isSQLite()) {
-            try (Connection connection = getConnector().getConnection();
-                 PreparedStatement ps = connection.prepareStatement(
-                         "REPLACE INTO " + getTablename() + " (cycle_id, community_name, total_amount, remaining_amount, last_updated) " +
-                                 "VALUES (?, ?, ?, ?, ?)")) {
-                ps.setInt(1, cycleId);
-                ps.setString(2, communityName);
-                ps.setInt(3, totalAmount);
-                ps.setInt(4, totalAmount);
-                ps.setTimestamp(5, now);
-                ps.executeUpdate();
-            }
-        } else {
-            try (Connection connection = getConnector().getConnection();
-                 PreparedStatement ps = connection.prepareStatement(
-                         "INSERT INTO " + getTablename() + " (cycle_id, community_name, total_amount, remaining_amount, last_updated) " +
-                                 "VALUES (?, ?, ?, ?, ?) " +
-                                 "ON DUPLICATE KEY UPDATE total_amount = ?, remaining_amount = ?, last_updated = ?")) {
-                ps.setInt(1, cycleId);
-                ps.setString(2, communityName);
-                ps.setInt(3, totalAmount);
-                ps.setInt(4, totalAmount);
-                ps.setTimestamp(5, now);
-                ps.setInt(6, totalAmount);
-                ps.setInt(7, totalAmount);
-                ps.setTimestamp(8, now);
-                ps.executeUpdate();
-            }
+        try (Connection connection = getConnector().getConnection();
+             PreparedStatement ps = connection.prepareStatement(getConnector().getDialect().upsert(getTablename(),
+                     List.of("cycle_id", "community_name", "total_amount", "remaining_amount", "last_updated"),
+                     List.of("cycle_id", "community_name")))) {
+            ps.setInt(1, cycleId);
+            ps.setString(2, communityName);
+            ps.setInt(3, totalAmount);
+            ps.setInt(4, totalAmount);
+            ps.setTimestamp(5, new Timestamp(System.currentTimeMillis()));
+            ps.executeUpdate();
         }
     }
 
     /**
      * プールから指定数量を減らす（アトミック操作）
+     * 残量の確認と減算を1つのUPDATEで行うため、同時に実行されても残量が負になることはない
+     *
+     * @return 残量が足りず減らせなかった場合、またはプールが存在しない場合はfalse
      */
     public boolean claimFromPool(int cycleId, String communityName, int amount) throws SQLException {
-        boolean isSQLite = getConnector().isSQLite();
-
-        try (Connection connection = getConnector().getConnection()) {
-            connection.setAutoCommit(false);
-            try {
-                // 現在の残量を確認
-                int currentRemaining;
-                String selectSQL = "SELECT remaining_amount FROM " + getTablename() +
-                                  " WHERE cycle_id = ? AND community_name = ?";
-                // MySQLの場合のみFOR UPDATEを追加（SQLiteはトランザクションで自動的にロック）
-                if (!isSQLite) {
-                    selectSQL += " FOR UPDATE";
-                }
-
-                try (PreparedStatement ps = connection.prepareStatement(selectSQL)) {
-                    ps.setInt(1, cycleId);
-                    ps.setString(2, communityName);
-                    try (ResultSet rs = ps.executeQuery()) {
-                        if (!rs.next()) {
-                            connection.rollback();
-                            return false;
-                        }
-                        currentRemaining = rs.getInt("remaining_amount");
-                    }
-                }
-
-                // 十分な残量があるかチェック
-                if (currentRemaining < amount) {
-                    connection.rollback();
-                    return false;
-                }
-
-                // 残量を減らす
-                try (PreparedStatement ps = connection.prepareStatement(
-                        "UPDATE " + getTablename() + " SET remaining_amount = remaining_amount - ?, last_updated = ? " +
-                                "WHERE cycle_id = ? AND community_name = ?")) {
-                    ps.setInt(1, amount);
-                    ps.setTimestamp(2, new Timestamp(System.currentTimeMillis()));
-                    ps.setInt(3, cycleId);
-                    ps.setString(4, communityName);
-                    ps.executeUpdate();
-                }
+        try (Connection connection = getConnector().getConnection();
+             PreparedStatement ps = connection.prepareStatement(
+                     "UPDATE " + getTablename() + " SET remaining_amount = remaining_amount - ?, last_updated = ? " +
+                             "WHERE cycle_id = ? AND community_name = ? AND remaining_amount >= ?")) {
+            ps.setInt(1, amount);
+            ps.setTimestamp(2, new Timestamp(System.currentTimeMillis()));
+            ps.setInt(3, cycleId);
+            ps.setString(4, communityName);
+            ps.setInt(5, amount);
+            return ps.executeUpdate() > 0;
+        }
+    }
 
-                connection.commit();
-                return true;
-            } catch (SQLException e) {
-                connection.rollback();
-                throw e;
-            } finally {
-                connection.setAutoCommit(true);
-            }
+    /**
+     * 取得した数量をプールに戻す（付与できなかった場合の払い戻し）
+     */
+    public void returnToPool(int cycleId, String communityName, int amount) throws SQLException {
+        try (Connection connection = getConnector().getConnection();
+             PreparedStatement ps = connection.prepareStatement(
+                     "UPDATE " + getTablename() + " SET remaining_amount = remaining_amount + ?, last_updated = ? " +
+                             "WHERE cycle_id = ? AND community_name = ?")) {
+            ps.setInt(1, amount);
+            ps.setTimestamp(2, new Timestamp(System.currentTimeMillis()));
+            ps.setInt(3, cycleId);
+            ps.setString(4, communityName);
+            ps.executeUpdate();
         }
     }
 
@@ -156,7 +101,7 @@ public class CommunityPoolTable extends DatabaseTable {
      * コミュニティプール情報を取得
      */
     public CommunityPool getPool(int cycleId, String communityName) throws SQLException {
-        try (Connection connection = getConnector().getConnection();
+        try (Connection connection = getConnector().getReadConnection();
              PreparedStatement ps = connection.prepareStatement(
                      "SELECT * FROM " + getTablename() + " WHERE cycle_id = ? AND community_name = ?")) {
             ps.setInt(1, cycleId);
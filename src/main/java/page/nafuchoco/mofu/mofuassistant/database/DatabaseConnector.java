@@ -19,41 +19,167 @@ package page.nafuchoco.mofu.mofuassistant.database;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 import lombok.val;
+import page.nafuchoco.mofu.mofuassistant.MofuAssistant;
+import page.nafuchoco.mofu.mofuassistant.MofuAssistantConfig;
+import page.nafuchoco.mofu.mofuassistant.metrics.PluginMetrics;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public class DatabaseConnector {
+    // 待機できる処理の数の上限 (超えた場合は拒否される)
+    private static final int EXECUTOR_QUEUE_CAPACITY = 1000;
+
     private final HikariDataSource dataSource;
+    // SQLiteのWALモードで読み込み専用の処理に使用するプール (それ以外の場合はnull)
+    private final HikariDataSource readDataSource;
     private final String prefix;
     private final DatabaseType databaseType;
+    private ExecutorService executor;
 
     public DatabaseConnector(DatabaseType databaseType, String address, String database, String username, String password, String prefix) {
+        this(databaseType, address, database, username, password, prefix, null);
+    }
+
+    public DatabaseConnector(DatabaseType databaseType, String address, String database, String username, String password, String prefix,
+                             MofuAssistantConfig.SQLiteConfig sqliteConfig) {
+        this(databaseType, address, database, username, password, prefix, sqliteConfig, null, null);
+    }
+
+    /**
+     * @param sqliteConfig SQLiteの接続設定、nullの場合はSQLiteの既定の設定で単一の接続を使用します
+     * @param poolConfig   コネクションプールの設定、nullの場合はHikariCPの既定値を使用します
+     * @param metrics      プールの統計の記録先、nullの場合は記録しません
+     */
+    public DatabaseConnector(DatabaseType databaseType, String address, String database, String username, String password, String prefix,
+                             MofuAssistantConfig.SQLiteConfig sqliteConfig, MofuAssistantConfig.PoolConfig poolConfig,
+                             PluginMetrics metrics) {
         this.databaseType = databaseType;
         val hconfig = new HikariConfig();
         hconfig.setDriverClassName(databaseType.getJdbcClass());
+        hconfig.setPoolName("MofuAssistant");
+        if (poolConfig != null)
+            applyPoolConfig(hconfig, poolConfig);
+        if (metrics != null)
+            hconfig.setMetricsTrackerFactory(new HikariPoolMetrics(metrics, "database.pool.write"));
 
         if (databaseType == DatabaseType.SQLITE) {
             // SQLiteの場合はファイルパスを使用
             hconfig.setJdbcUrl(databaseType.getAddressPrefix() + database);
             // SQLiteはユーザー名・パスワード不要
-            hconfig.setMaximumPoolSize(1); // SQLiteは単一接続推奨
+            hconfig.setMaximumPoolSize(1); // 書き込みは単一の接続に集約する
+            hconfig.setMinimumIdle(1);
+            if (sqliteConfig != null)
+                applySQLitePragmas(hconfig, sqliteConfig);
+            if (sqliteConfig != null && sqliteConfig.walMode())
+                hconfig.addDataSourceProperty("journal_mode", "WAL");
         } else {
             // MySQL/MariaDBの場合
             hconfig.setJdbcUrl(databaseType.getAddressPrefix() + address + "/" + database);
             hconfig.addDataSourceProperty("user", username);
             hconfig.addDataSourceProperty("password", password);
+            // プリペアドステートメントのキャッシュなど、ドライバ固有の設定
+            if (poolConfig != null)
+                poolConfig.driverProperties().forEach(hconfig::addDataSourceProperty);
         }
 
         dataSource = new HikariDataSource(hconfig);
+        // WALモードへの切り替えは書き込み用の接続で行われるため、読み込み用のプールはその後に作成する
+        if (databaseType == DatabaseType.SQLITE && sqliteConfig != null && sqliteConfig.walMode()) {
+            val readConfig = new HikariConfig();
+            readConfig.setDriverClassName(databaseType.getJdbcClass());
+            readConfig.setJdbcUrl(databaseType.getAddressPrefix() + database);
+            readConfig.setPoolName(dataSource.getPoolName() + "-read");
+            if (poolConfig != null)
+                applyPoolConfig(readConfig, poolConfig);
+            if (metrics != null)
+                readConfig.setMetricsTrackerFactory(new HikariPoolMetrics(metrics, "database.pool.read"));
+            readConfig.setMaximumPoolSize(Math.max(1, sqliteConfig.readerPoolSize()));
+            readConfig.setMinimumIdle(readConfig.getMaximumPoolSize());
+            readConfig.setConnectionInitSql("PRAGMA query_only = 1");
+            applySQLitePragmas(readConfig, sqliteConfig);
+            readDataSource = new HikariDataSource(readConfig);
+        } else {
+            readDataSource = null;
+        }
         this.prefix = prefix;
     }
 
+    private static void applyPoolConfig(HikariConfig hconfig, MofuAssistantConfig.PoolConfig poolConfig) {
+        hconfig.setMaximumPoolSize(poolConfig.maximumPoolSize());
+        // 負の値の場合は最大接続数と同じ数の接続を維持する
+        if (poolConfig.minimumIdle() >= 0)
+            hconfig.setMinimumIdle(Math.min(poolConfig.minimumIdle(), poolConfig.maximumPoolSize()));
+        hconfig.setConnectionTimeout(poolConfig.connectionTimeoutMillis());
+        hconfig.setValidationTimeout(poolConfig.validationTimeoutMillis());
+        hconfig.setLeakDetectionThreshold(poolConfig.leakDetectionThresholdMillis());
+    }
+
+    private static void applySQLitePragmas(HikariConfig hconfig, MofuAssistantConfig.SQLiteConfig sqliteConfig) {
+        // sqlite-jdbcは接続時にこれらのプロパティをPRAGMAとして適用する
+        if (sqliteConfig.walMode())
+            hconfig.addDataSourceProperty("synchronous", "NORMAL");
+        hconfig.addDataSourceProperty("busy_timeout", String.valueOf(sqliteConfig.busyTimeoutMillis()));
+        // 負の値はページ数ではなくKiB単位での指定になる
+        hconfig.addDataSourceProperty("cache_size", String.valueOf(-sqliteConfig.cacheSizeKb()));
+        hconfig.addDataSourceProperty("mmap_size", String.valueOf(sqliteConfig.mmapSizeMb() * 1024L * 1024L));
+    }
+
+    /**
+     * 書き込みに使用する接続を返します。
+     * SQLiteの場合は単一の接続のため、使用後は速やかに閉じてください。
+     *
+     * @return データベースへの接続
+     * @throws SQLException 接続に失敗した場合
+     */
     public Connection getConnection() throws SQLException {
         return dataSource.getConnection();
     }
 
+    /**
+     * 読み込みのみを行う処理に使用する接続を返します。
+     * SQLiteのWALモードでは書き込み用の接続とは別のプールから返され、書き込みを待たずに読み込めます。
+     * それ以外の場合は {@link #getConnection()} と同じです。
+     * この接続で書き込みを行うことはできません。
+     *
+     * @return データベースへの接続
+     * @throws SQLException 接続に失敗した場合
+     */
+    public Connection getReadConnection() throws SQLException {
+        return readDataSource != null ? readDataSource.getConnection() : dataSource.getConnection();
+    }
+
+    /**
+     * データベース処理専用のスレッドプールを返します。
+     * スレッド数はコネクションプールの最大数 (読み込み用のプールを含む) と同じで、初回の呼び出し時に作成されます。
+     * 待機中の処理が上限に達している場合、処理の追加はRejectedExecutionExceptionで拒否されます。
+     *
+     * @return データベース処理用のExecutor
+     */
+    public synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            int threads = dataSource.getMaximumPoolSize()
+                    + (readDataSource != null ? readDataSource.getMaximumPoolSize() : 0);
+            executor = new DatabaseExecutor(threads, EXECUTOR_QUEUE_CAPACITY, MofuAssistant.getInstance().getMetrics());
+        }
+        return executor;
+    }
+
     public void close() {
+        synchronized (this) {
+            if (executor != null) {
+                executor.shutdown();
+                try {
+                    executor.awaitTermination(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        if (readDataSource != null)
+            readDataSource.close();
         dataSource.close();
     }
 
@@ -69,18 +195,24 @@ public class DatabaseConnector {
         return databaseType == DatabaseType.SQLITE;
     }
 
+    public SqlDialect getDialect() {
+        return databaseType.getDialect();
+    }
+
 
     public enum DatabaseType {
-        SQLITE("org.sqlite.JDBC", "jdbc:sqlite:"),
-        MARIADB("org.mariadb.jdbc.Driver", "jdbc:mariadb://"),
-        MYSQL("com.mysql.jdbc.Driver", "jdbc:mysql://");
+        SQLITE("org.sqlite.JDBC", "jdbc:sqlite:", SqlDialect.SQLITE),
+        MARIADB("org.mariadb.jdbc.Driver", "jdbc:mariadb://", SqlDialect.MYSQL),
+        MYSQL("com.mysql.jdbc.Driver", "jdbc:mysql://", SqlDialect.MYSQL);
 
         private final String jdbcClass;
         private final String addressPrefix;
+        private final SqlDialect dialect;
 
-        DatabaseType(String jdbcClass, String addressPrefix) {
+        DatabaseType(String jdbcClass, String addressPrefix, SqlDialect dialect) {
             this.jdbcClass = jdbcClass;
             this.addressPrefix = addressPrefix;
+            this.dialect = dialect;
         }
 
         public String getJdbcClass() {
@@ -90,5 +222,9 @@ public class DatabaseConnector {
         public String getAddressPrefix() {
             return addressPrefix;
         }
+
+        public SqlDialect getDialect() {
+            return dialect;
+        }
     }
 }
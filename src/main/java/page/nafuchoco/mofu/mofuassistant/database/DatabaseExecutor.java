@@ -0,0 +1,90 @@
+/*
+ * Copyright 2021 NAFU_at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package page.nafuchoco.mofu.mofuassistant.database;
+
+import lombok.val;
+import page.nafuchoco.mofu.mofuassistant.metrics.PluginMetrics;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * データベース処理専用のスレッドプール
+ * 待機できる処理の数に上限を設け、超えた場合は拒否する
+ * キューの長さ、拒否された件数、待機時間と実行時間を計測する
+ */
+public class DatabaseExecutor extends ThreadPoolExecutor {
+    private final PluginMetrics.Timer waitTime;
+    private final PluginMetrics.Timer runTime;
+
+    public DatabaseExecutor(int threads, int queueCapacity, PluginMetrics metrics) {
+        super(threads, threads, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity));
+        val threadNumber = new AtomicInteger();
+        setThreadFactory(runnable -> {
+            val thread = new DatabaseThread(runnable, "MofuAssistant-Database-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        val rejected = metrics.counter("database.executor.rejected");
+        setRejectedExecutionHandler((runnable, executor) -> {
+            rejected.increment();
+            throw new RejectedExecutionException(executor.isShutdown()
+                    ? "The database executor has been shut down."
+                    : "The database executor queue is full.");
+        });
+
+        this.waitTime = metrics.timer("database.executor.wait");
+        this.runTime = metrics.timer("database.executor.run");
+        metrics.gauge("database.executor.queue", () -> getQueue().size());
+        metrics.gauge("database.executor.active", this::getActiveCount);
+    }
+
+    /**
+     * 現在のスレッドがデータベース処理用のスレッドかを返します。
+     * このスレッドから他の処理の完了を待機すると、処理を実行するスレッドが不足してデッドロックする可能性があります。
+     *
+     * @return データベース処理用のスレッドの場合はtrue
+     */
+    public static boolean isDatabaseThread() {
+        return Thread.currentThread() instanceof DatabaseThread;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        long submittedAt = System.nanoTime();
+        super.execute(() -> {
+            long startedAt = System.nanoTime();
+            waitTime.record(startedAt - submittedAt);
+            try {
+                command.run();
+            } finally {
+                runTime.record(System.nanoTime() - startedAt);
+            }
+        });
+    }
+
+
+    private static class DatabaseThread extends Thread {
+
+        DatabaseThread(Runnable runnable, String name) {
+            super(runnable, name);
+        }
+    }
+}
@@ -16,8 +16,13 @@
 
 package page.nafuchoco.mofu.mofuassistant.database;
 
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
 
 public abstract class DatabaseTable {
     private final DatabaseConnector connector;
@@ -36,19 +41,83 @@ public abstract class DatabaseTable {
         return connector;
     }
 
+    /**
+     * Returns the schema migration steps of this table in the order they are applied.
+     * The schema version of the table is the number of steps applied, and steps must never be removed or reordered.
+     * Since tables created by versions before the schema versioning have no recorded version, the first step must accept an existing table.
+     * MySQL and MariaDB commit DDL implicitly, so a step is not rolled back when it fails partway.
+     * Every step must therefore be safe to run again after a partial failure.
+     *
+     * @return Migration steps of this table
+     * @see SchemaMigrator
+     */
+    public abstract List<MigrationStep> getMigrationSteps();
+
     /**
      * Creates a table with the specified structure.
      * If a table with the same name already exists, it exits without executing the process.
      *
+     * @param connection   Connection used to create the table
      * @param construction Structure of the table to be created
      * @throws SQLException Thrown when creating a table fails.
      */
-    public void createTable(String construction) throws SQLException {
-        try (var connection = connector.getConnection()) {
-            try (PreparedStatement ps = connection.prepareStatement(
-                    "CREATE TABLE IF NOT EXISTS " + tablename + " (" + construction + ")")) {
-                ps.execute();
-            }
+    protected void createTable(Connection connection, String construction) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(
+                "CREATE TABLE IF NOT EXISTS " + tablename + " (" + construction + ")")) {
+            ps.execute();
         }
     }
+
+    /**
+     * Runs the specified process on the database executor and returns its result as a future.
+     * A thrown SQLException, or a rejection by a full executor, completes the future exceptionally.
+     * Use {@link page.nafuchoco.mofu.mofuassistant.MofuAssistant#getMainThreadExecutor()} to handle the result on the server thread.
+     *
+     * @param supplier Process to be executed
+     * @param <T>      Type of the result
+     * @return Future that completes with the result
+     */
+    public <T> CompletableFuture<T> supplyAsync(SqlSupplier<T> supplier) {
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return supplier.get();
+                } catch (SQLException e) {
+                    throw new CompletionException(e);
+                }
+            }, connector.getExecutor());
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Runs the specified process on the database executor.
+     *
+     * @param runnable Process to be executed
+     * @return Future that completes when the process finishes
+     * @see #supplyAsync(SqlSupplier)
+     */
+    public CompletableFuture<Void> runAsync(SqlRunnable runnable) {
+        return supplyAsync(() -> {
+            runnable.run();
+            return null;
+        });
+    }
+
+
+    @FunctionalInterface
+    public interface MigrationStep {
+        void apply(Connection connection) throws SQLException;
+    }
+
+    @FunctionalInterface
+    public interface SqlSupplier<T> {
+        T get() throws SQLException;
+    }
+
+    @FunctionalInterface
+    public interface SqlRunnable {
+        void run() throws SQLException;
+    }
 }
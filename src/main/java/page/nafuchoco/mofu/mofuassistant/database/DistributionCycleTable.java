@@ -28,46 +28,22 @@ public class DistributionCycleTable extends DatabaseTable {
         super(tablename, connector);
     }
 
-    public void createTable() throws SQLException {
-        boolean isSQLite = getConnector().isSQLite();
+    @Override
+    public List<MigrationStep> getMigrationSteps() {
+        return List.of(
+                this::createTable
+        );
+    }
 
-        try (Connection connection = getConnector().getConnection()) {
-            // テーブル作成
-            String createTableSQL;
-            if (isSQLite) {
-                createTableSQL = "CREATE TABLE IF NOT EXISTS " + getTablename() + " (" +
-                        "cycle_id INTEGER PRIMARY KEY AUTOINCREMENT, " +
-                        "start_time TIMESTAMP NOT NULL, " +
-                        "end_time TIMESTAMP NOT NULL, " +
-                        "active BOOLEAN DEFAULT 1" +
-                        ")";
-            } else {
-                createTableSQL = "CREATE TABLE IF NOT EXISTS " + getTablename() + " (" +
-                        "cycle_id INT AUTO_INCREMENT PRIMARY KEY, " +
+    private void createTable(Connection connection) throws SQLException {
+        SqlDialect dialect = getConnector().getDialect();
+        createTable(connection,
+                "cycle_id " + dialect.autoIncrementPrimaryKey() + ", " +
                         "start_time TIMESTAMP NOT NULL, " +
                         "end_time TIMESTAMP NOT NULL, " +
-                        "active BOOLEAN DEFAULT TRUE, " +
-                        "INDEX idx_active (active), " +
-                        "INDEX idx_times (start_time, end_time)" +
-                        ")";
-            }
-
-            try (PreparedStatement ps = connection.prepareStatement(createTableSQL)) {
-                ps.execute();
-            }
-
-            // SQLiteの場合はインデックスを別途作成
-            if (isSQLite) {
-                try (PreparedStatement ps = connection.prepareStatement(
-                        "CREATE INDEX IF NOT EXISTS idx_active ON " + getTablename() + " (active)")) {
-                    ps.execute();
-                }
-                try (PreparedStatement ps = connection.prepareStatement(
-                        "CREATE INDEX IF NOT EXISTS idx_times ON " + getTablename() + " (start_time, end_time)")) {
-                    ps.execute();
-                }
-            }
-        }
+                        "active BOOLEAN DEFAULT TRUE");
+        dialect.createIndex(connection, getTablename(), "idx_active", "active");
+        dialect.createIndex(connection, getTablename(), "idx_times", "start_time, end_time");
     }
 
     /**
@@ -96,7 +72,7 @@ public class DistributionCycleTable extends DatabaseTable {
      * 現在アクティブな配布サイクルを取得
      */
     public DistributionCycle getActiveCycle() throws SQLException {
-        try (Connection connection = getConnector().getConnection();
+        try (Connection connection = getConnector().getReadConnection();
              PreparedStatement ps = connection.prepareStatement(
                      "SELECT * FROM " + getTablename() + " WHERE active = TRUE ORDER BY cycle_id DESC LIMIT 1")) {
             try (ResultSet rs = ps.executeQuery()) {
@@ -117,7 +93,7 @@ public class DistributionCycleTable extends DatabaseTable {
      * 特定のサイクルを取得
      */
     public DistributionCycle getCycle(int cycleId) throws SQLException {
-        try (Connection connection = getConnector().getConnection();
+        try (Connection connection = getConnector().getReadConnection();
              PreparedStatement ps = connection.prepareStatement(
                      "SELECT * FROM " + getTablename() + " WHERE cycle_id = ?")) {
             ps.setInt(1, cycleId);
@@ -163,7 +139,7 @@ public class DistributionCycleTable extends DatabaseTable {
      */
     public List<DistributionCycle> getAllCycles(int limit) throws SQLException {
         List<DistributionCycle> cycles = new ArrayList<>();
-        try (Connection connection = getConnector().getConnection();
+        try (Connection connection = getConnector().getReadConnection();
              PreparedStatement ps = connection.prepareStatement(
                      "SELECT * FROM " + getTablename() + " ORDER BY cycle_id DESC LIMIT ?")) {
             ps.setInt(1, limit);
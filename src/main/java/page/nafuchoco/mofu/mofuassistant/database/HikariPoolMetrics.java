@@ -0,0 +1,78 @@
+/*
+ * Copyright 2021 NAFU_at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package page.nafuchoco.mofu.mofuassistant.database;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+import lombok.val;
+import page.nafuchoco.mofu.mofuassistant.metrics.PluginMetrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HikariCPのコネクションプールの統計をプラグインの計測値として公開するクラス
+ * 接続数はゲージとして、接続の取得待ち時間と使用時間はタイマーとして記録する
+ */
+public class HikariPoolMetrics implements MetricsTrackerFactory {
+    private final PluginMetrics metrics;
+    private final String prefix;
+
+    /**
+     * @param metrics 記録先の計測値
+     * @param prefix  計測値の名前の接頭辞 (例: database.pool.write)
+     */
+    public HikariPoolMetrics(PluginMetrics metrics, String prefix) {
+        this.metrics = metrics;
+        this.prefix = prefix;
+    }
+
+    @Override
+    public IMetricsTracker create(String poolName, PoolStats poolStats) {
+        // PoolStatsは一定時間ごとに値を更新するため、参照のたびにプールを走査することはない
+        metrics.gauge(prefix + ".active", poolStats::getActiveConnections);
+        metrics.gauge(prefix + ".idle", poolStats::getIdleConnections);
+        metrics.gauge(prefix + ".pending", poolStats::getPendingThreads);
+        metrics.gauge(prefix + ".total", poolStats::getTotalConnections);
+
+        val acquire = metrics.timer(prefix + ".acquire");
+        val usage = metrics.timer(prefix + ".usage");
+        val creation = metrics.timer(prefix + ".creation");
+        val timeouts = metrics.counter(prefix + ".timeouts");
+        return new IMetricsTracker() {
+            @Override
+            public void recordConnectionCreatedMillis(long connectionCreatedMillis) {
+                creation.record(TimeUnit.MILLISECONDS.toNanos(connectionCreatedMillis));
+            }
+
+            @Override
+            public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+                acquire.record(elapsedAcquiredNanos);
+            }
+
+            @Override
+            public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+                usage.record(TimeUnit.MILLISECONDS.toNanos(elapsedBorrowedMillis));
+            }
+
+            @Override
+            public void recordConnectionTimeout() {
+                timeouts.increment();
+            }
+        };
+    }
+}
@@ -16,69 +16,331 @@
 
 package page.nafuchoco.mofu.mofuassistant.database;
 
-import com.google.gson.Gson;
 import lombok.val;
 import page.nafuchoco.mofu.mofuassistant.MofuAssistant;
 import page.nafuchoco.mofu.mofuassistant.data.MofuPlayerData;
+import page.nafuchoco.mofu.mofuassistant.data.PlayerSettingsCodec;
 
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.UUID;
+import java.sql.Types;
+import java.util.*;
 import java.util.logging.Level;
 
 public class MofuAssistantTable extends DatabaseTable {
-    private static final Gson mapper = new Gson();
+    private static final int MAX_IN_PARAMETERS = 500;
+    private static final int EXPORT_PAGE_SIZE = 1000;
 
     public MofuAssistantTable(String tablename, DatabaseConnector connector) {
         super(tablename, connector);
     }
 
-    public void createTable() throws SQLException {
+    @Override
+    public List<MigrationStep> getMigrationSteps() {
+        return List.of(
+                this::createTable,
+                this::addSettingsBlobColumnIfNeeded
+        );
+    }
+
+    private void createTable(Connection connection) throws SQLException {
         // SQLiteの場合はTEXT、MySQL/MariaDBの場合はLONGTEXTを使用
-        String dataType = getConnector().isSQLite() ? "TEXT" : "LONGTEXT";
-        super.createTable("id VARCHAR(36) PRIMARY KEY, playername VARCHAR(16), player_data " + dataType);
+        // player_dataは以前のバージョンのJSON形式のデータで、読み込み時にsettings_blobへ移行される
+        createTable(connection, "id VARCHAR(36) PRIMARY KEY, playername VARCHAR(16), " +
+                "player_data " + getConnector().getDialect().longTextType() + ", settings_blob BLOB");
+    }
+
+    /**
+     * 以前のバージョンで作成されたテーブルにsettings_blobカラムを追加
+     */
+    private void addSettingsBlobColumnIfNeeded(Connection connection) throws SQLException {
+        if (!getConnector().getDialect().columnExists(connection, getTablename(), "settings_blob")) {
+            try (PreparedStatement ps = connection.prepareStatement(
+                    "ALTER TABLE " + getTablename() + " ADD COLUMN settings_blob BLOB")) {
+                ps.execute();
+            }
+            MofuAssistant.getInstance().getLogger().log(Level.INFO, "Added the settings_blob column to " + getTablename() + ".");
+        }
     }
 
+    /**
+     * プレイヤーを登録します。同時に初回の読み込みが行われた場合に備えて、既に登録されている場合は何もしません。
+     */
     public void registerPlayer(MofuPlayerData playerData) throws SQLException {
         try (var connection = getConnector().getConnection();
-             var ps = connection.prepareStatement(
-                     "INSERT INTO " + getTablename() + " (id, playername, player_data) " +
-                             "VALUES (?, ?, ?)"
+             var ps = connection.prepareStatement(getConnector().getDialect().insertIfAbsent(getTablename(),
+                     List.of("id", "playername", "settings_blob"), List.of("id"))
              )) {
             ps.setString(1, playerData.getId().toString());
             ps.setString(2, playerData.getPlayerName());
-            ps.setString(3, mapper.toJson(playerData.getSettings()));
+            ps.setBytes(3, PlayerSettingsCodec.encode(playerData.getSettings()));
             ps.execute();
         }
     }
 
-    public MofuPlayerData getPlayerData(UUID id) {
-        try (var connection = getConnector().getConnection();
+    /**
+     * プレイヤーデータを取得します。
+     * 保存されている設定が壊れている場合は、データが存在しないものとして扱います。
+     *
+     * @param id プレイヤーのUUID
+     * @return プレイヤーデータ、存在しない場合はnull
+     * @throws SQLException 取得に失敗した場合
+     */
+    public MofuPlayerData getPlayerData(UUID id) throws SQLException {
+        MofuPlayerData playerData = null;
+        boolean legacy = false;
+        try (var connection = getConnector().getReadConnection();
              var ps = connection.prepareStatement(
-                     "SELECT * FROM " + getTablename() + " WHERE id = ?"
+                     "SELECT playername, player_data, settings_blob FROM " + getTablename() + " WHERE id = ?"
              )) {
             ps.setString(1, id.toString());
             try (var resultSet = ps.executeQuery()) {
-                while (resultSet.next()) {
-                    val playername = resultSet.getString("playername");
-                    val playerSettings = mapper.fromJson(resultSet.getString("player_data"), MofuPlayerData.PlayerSettings.class);
-                    return new MofuPlayerData(id, playername, playerSettings);
+                if (resultSet.next()) {
+                    playerData = new MofuPlayerData(id, resultSet.getString("playername"), readSettings(resultSet));
+                    legacy = resultSet.getBytes("settings_blob") == null;
                 }
             }
+        } catch (IOException e) {
+            MofuAssistant.getInstance().getLogger().log(Level.WARNING, "Failed to decode player data: " + id, e);
+        }
+        // 以前のバージョンのJSON形式のデータは読み込み後に移行する
+        if (legacy)
+            migrateLegacyData(List.of(playerData));
+        return playerData;
+    }
+
+    /**
+     * 複数のプレイヤーデータを1回のクエリで取得します。
+     * データが存在しないプレイヤーは結果に含まれません。
+     *
+     * @param ids 取得するプレイヤーのUUID
+     * @return UUIDとプレイヤーデータのMap
+     * @throws SQLException 取得に失敗した場合
+     */
+    public Map<UUID, MofuPlayerData> getPlayerData(Collection<UUID> ids) throws SQLException {
+        Map<UUID, MofuPlayerData> result = new HashMap<>();
+        if (ids.isEmpty())
+            return result;
+
+        List<UUID> idList = new ArrayList<>(ids);
+        List<MofuPlayerData> legacyData = new ArrayList<>();
+        try (var connection = getConnector().getReadConnection()) {
+            // プレースホルダの数の上限を超えないよう、一定の件数ごとに分割する
+            for (int from = 0; from < idList.size(); from += MAX_IN_PARAMETERS) {
+                List<UUID> chunk = idList.subList(from, Math.min(from + MAX_IN_PARAMETERS, idList.size()));
+                String placeholders = String.join(", ", Collections.nCopies(chunk.size(), "?"));
+                try (var ps = connection.prepareStatement(
+                        "SELECT id, playername, player_data, settings_blob FROM " + getTablename() + " WHERE id IN (" + placeholders + ")"
+                )) {
+                    for (int i = 0; i < chunk.size(); i++)
+                        ps.setString(i + 1, chunk.get(i).toString());
+                    try (var resultSet = ps.executeQuery()) {
+                        while (resultSet.next()) {
+                            val id = UUID.fromString(resultSet.getString("id"));
+                            try {
+                                val playerData = new MofuPlayerData(id, resultSet.getString("playername"), readSettings(resultSet));
+                                result.put(id, playerData);
+                                if (resultSet.getBytes("settings_blob") == null)
+                                    legacyData.add(playerData);
+                            } catch (IOException e) {
+                                MofuAssistant.getInstance().getLogger().log(Level.WARNING, "Failed to decode player data: " + id, e);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        // 以前のバージョンのJSON形式のデータは読み込み後に移行する
+        if (!legacyData.isEmpty())
+            migrateLegacyData(legacyData);
+        return result;
+    }
+
+    /**
+     * 全てのプレイヤーデータをUUIDの順に一定の件数ずつ読み込みます。
+     * 読み込んだ行は1ページ分しか保持しないため、行数に関係なく一定のメモリで処理できます。
+     * 接続はページごとに返却し、visitorの処理中は保持しないため、プレイヤーのログイン時の読み込みを長時間妨げません。
+     * 以前のバージョンのJSON形式のデータは変換して渡されますが、データベース上の移行は行いません。
+     *
+     * @param visitor 読み込んだプレイヤーデータを受け取る処理
+     * @return 読み込んだ行数
+     * @throws SQLException 取得に失敗した場合
+     * @throws IOException  visitorの処理に失敗した場合
+     */
+    public long forEachPlayerData(PlayerDataVisitor visitor) throws SQLException, IOException {
+        long count = 0;
+        String lastId = "";
+        List<MofuPlayerData> page = new ArrayList<>(EXPORT_PAGE_SIZE);
+        int read;
+        do {
+            page.clear();
+            read = 0;
+            try (var connection = getConnector().getReadConnection();
+                 var ps = connection.prepareStatement(
+                         "SELECT id, playername, player_data, settings_blob FROM " + getTablename() +
+                                 " WHERE id > ? ORDER BY id LIMIT ?"
+                 )) {
+                ps.setString(1, lastId);
+                ps.setInt(2, EXPORT_PAGE_SIZE);
+                try (var resultSet = ps.executeQuery()) {
+                    while (resultSet.next()) {
+                        read++;
+                        lastId = resultSet.getString("id");
+                        val id = UUID.fromString(lastId);
+                        try {
+                            page.add(new MofuPlayerData(id, resultSet.getString("playername"), readSettings(resultSet)));
+                        } catch (IOException e) {
+                            MofuAssistant.getInstance().getLogger().log(Level.WARNING, "Failed to decode player data: " + id, e);
+                        }
+                    }
+                }
+            }
+            for (MofuPlayerData playerData : page) {
+                visitor.visit(playerData);
+                count++;
+            }
+        } while (read == EXPORT_PAGE_SIZE);
+        return count;
+    }
+
+    /**
+     * プレイヤーデータを一定の件数ごとのバッチで書き込みます。同じUUIDのデータが存在する場合は置き換えられます。
+     * バッチごとにコミットするため、途中で失敗した場合はそれまでのバッチの内容が反映されたままになります。
+     *
+     * @param source    書き込むプレイヤーデータの読み込み元
+     * @param batchSize 1回のバッチで書き込む件数
+     * @return 書き込んだ行数
+     * @throws SQLException 書き込みに失敗した場合
+     * @throws IOException  sourceの読み込みに失敗した場合
+     */
+    public long replacePlayerData(PlayerDataSource source, int batchSize) throws SQLException, IOException {
+        long count = 0;
+        try (var connection = getConnector().getConnection()) {
+            connection.setAutoCommit(false);
+            try (var ps = connection.prepareStatement(
+                    getConnector().getDialect().upsert(getTablename(),
+                            List.of("id", "playername", "player_data", "settings_blob"), List.of("id"))
+            )) {
+                int batched = 0;
+                MofuPlayerData playerData;
+                while ((playerData = source.next()) != null) {
+                    ps.setString(1, playerData.getId().toString());
+                    ps.setString(2, playerData.getPlayerName());
+                    ps.setNull(3, Types.VARCHAR);
+                    ps.setBytes(4, PlayerSettingsCodec.encode(playerData.getSettings()));
+                    ps.addBatch();
+                    count++;
+                    if (++batched >= batchSize) {
+                        ps.executeBatch();
+                        connection.commit();
+                        batched = 0;
+                    }
+                }
+                if (batched > 0) {
+                    ps.executeBatch();
+                    connection.commit();
+                }
+            } catch (SQLException | IOException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        }
+        return count;
+    }
+
+    private MofuPlayerData.PlayerSettings readSettings(ResultSet resultSet) throws SQLException, IOException {
+        val settingsBlob = resultSet.getBytes("settings_blob");
+        if (settingsBlob != null)
+            return PlayerSettingsCodec.decode(settingsBlob);
+
+        val legacyData = resultSet.getString("player_data");
+        return legacyData != null
+                ? PlayerSettingsCodec.decodeLegacyJson(legacyData)
+                : new MofuPlayerData.PlayerSettings();
+    }
+
+    /**
+     * 以前のバージョンのJSON形式のデータを現在の形式で書き直します。
+     * 読み込み用の接続では書き込めないため、読み込みが終わった後に書き込み用の接続で実行します。
+     * 失敗した場合は次回の読み込み時に再度移行されます。
+     * 読み込みから書き込みまでの間に新しい形式で保存された行は上書きしません。
+     */
+    private void migrateLegacyData(List<MofuPlayerData> legacyData) {
+        try (var connection = getConnector().getConnection();
+             var ps = connection.prepareStatement(
+                     "UPDATE " + getTablename() + " SET player_data = NULL, settings_blob = ? WHERE id = ? AND settings_blob IS NULL"
+             )) {
+            for (MofuPlayerData playerData : legacyData) {
+                ps.setBytes(1, PlayerSettingsCodec.encode(playerData.getSettings()));
+                ps.setString(2, playerData.getId().toString());
+                ps.addBatch();
+            }
+            ps.executeBatch();
         } catch (SQLException e) {
-            MofuAssistant.getInstance().getLogger().log(Level.WARNING, "Failed to get player data.", e);
+            MofuAssistant.getInstance().getLogger().log(Level.WARNING, "Failed to migrate legacy player data.", e);
         }
-        return null;
     }
 
     public void updatePlayerData(MofuPlayerData playerData) throws SQLException {
         try (var connection = getConnector().getConnection();
              var ps = connection.prepareStatement(
-                     "UPDATE " + getTablename() + " SET playername = ?,  player_data = ? WHERE id = ?"
+                     "UPDATE " + getTablename() + " SET playername = ?, player_data = NULL, settings_blob = ? WHERE id = ?"
              )) {
             ps.setString(3, playerData.getId().toString());
             ps.setString(1, playerData.getPlayerName());
-            ps.setString(2, mapper.toJson(playerData.getSettings()));
+            ps.setBytes(2, PlayerSettingsCodec.encode(playerData.getSettings()));
             ps.execute();
         }
     }
+
+    /**
+     * 複数のプレイヤーデータを1回のバッチで更新します。
+     *
+     * @param playerDataList 更新するプレイヤーデータ
+     * @throws SQLException 更新に失敗した場合 (バッチ全体がロールバックされます)
+     */
+    public void updatePlayerData(Collection<MofuPlayerData> playerDataList) throws SQLException {
+        try (var connection = getConnector().getConnection()) {
+            connection.setAutoCommit(false);
+            try (var ps = connection.prepareStatement(
+                    "UPDATE " + getTablename() + " SET playername = ?, player_data = NULL, settings_blob = ? WHERE id = ?"
+            )) {
+                for (MofuPlayerData playerData : playerDataList) {
+                    ps.setString(1, playerData.getPlayerName());
+                    ps.setBytes(2, PlayerSettingsCodec.encode(playerData.getSettings()));
+                    ps.setString(3, playerData.getId().toString());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+
+
+    @FunctionalInterface
+    public interface PlayerDataVisitor {
+        void visit(MofuPlayerData playerData) throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface PlayerDataSource {
+        /**
+         * 次のプレイヤーデータを返します。
+         *
+         * @return プレイヤーデータ、残りがない場合はnull
+         * @throws IOException 読み込みに失敗した場合
+         */
+        MofuPlayerData next() throws IOException;
+    }
 }
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2021 NAFU_at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package page.nafuchoco.mofu.mofuassistant.database;
+
+import page.nafuchoco.mofu.mofuassistant.peaceful.PeacefulZone;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+public class PeacefulZoneTable extends DatabaseTable {
+    public static final int MAX_NAME_LENGTH = 64;
+
+    public PeacefulZoneTable(String tablename, DatabaseConnector connector) {
+        super(tablename, connector);
+    }
+
+    @Override
+    public List<MigrationStep> getMigrationSteps() {
+        return List.of(
+                this::createTable
+        );
+    }
+
+    private void createTable(Connection connection) throws SQLException {
+        createTable(connection, "name VARCHAR(" + MAX_NAME_LENGTH + ") PRIMARY KEY, world VARCHAR(255) NOT NULL, " +
+                "min_x INT NOT NULL, min_z INT NOT NULL, max_x INT NOT NULL, max_z INT NOT NULL");
+    }
+
+    /**
+     * 全てのゾーンを取得
+     */
+    public List<PeacefulZone> getAllZones() throws SQLException {
+        List<PeacefulZone> zones = new ArrayList<>();
+        try (Connection connection = getConnector().getReadConnection();
+             PreparedStatement ps = connection.prepareStatement(
+                     "SELECT * FROM " + getTablename())) {
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    zones.add(new PeacefulZone(
+                            rs.getString("name"),
+                            rs.getString("world"),
+                            rs.getInt("min_x"),
+                            rs.getInt("min_z"),
+                            rs.getInt("max_x"),
+                            rs.getInt("max_z")
+                    ));
+                }
+            }
+        }
+        return zones;
+    }
+
+    /**
+     * ゾーンを追加
+     */
+    public void insertZone(PeacefulZone zone) throws SQLException {
+        try (Connection connection = getConnector().getConnection();
+             PreparedStatement ps = connection.prepareStatement(
+                     "INSERT INTO " + getTablename() +
+                     " (name, world, min_x, min_z, max_x, max_z) VALUES (?, ?, ?, ?, ?, ?)")) {
+            ps.setString(1, zone.name());
+            ps.setString(2, zone.world());
+            ps.setInt(3, zone.minX());
+            ps.setInt(4, zone.minZ());
+            ps.setInt(5, zone.maxX());
+            ps.setInt(6, zone.maxZ());
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * ゾーンを削除
+     */
+    public boolean deleteZone(String name) throws SQLException {
+        try (Connection connection = getConnector().getConnection();
+             PreparedStatement ps = connection.prepareStatement(
+                     "DELETE FROM " + getTablename() + " WHERE name = ?")) {
+            ps.setString(1, name);
+            return ps.executeUpdate() > 0;
+        }
+    }
+}
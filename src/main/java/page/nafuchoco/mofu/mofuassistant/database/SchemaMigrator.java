@@ -0,0 +1,173 @@
+/*
+ * Copyright 2021 NAFU_at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package page.nafuchoco.mofu.mofuassistant.database;
+
+import lombok.val;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * テーブルのスキーマのバージョンを管理し、未適用のマイグレーションを実行するクラス
+ * 各テーブルのバージョンはschema_versionテーブルに記録され、最新の場合は1回の読み込みのみで完了する
+ * 複数のサーバーが同じデータベースを共有している場合に備えて、マイグレーションはロックを取得して実行する
+ * 各ステップはバージョンの記録と同じトランザクションで実行されるが、MySQL/MariaDBではDDLが暗黙的にコミットされるため、
+ * ステップは途中で失敗した後に再実行されても問題ないように作成する必要がある
+ */
+public class SchemaMigrator {
+    private static final int LOCK_TIMEOUT_SECONDS = 30;
+
+    private final DatabaseConnector connector;
+    private final Logger logger;
+    private final String versionTable;
+
+    public SchemaMigrator(DatabaseConnector connector, Logger logger) {
+        this.connector = connector;
+        this.logger = logger;
+        this.versionTable = connector.getPrefix() + "schema_version";
+    }
+
+    /**
+     * 指定したテーブルのうち、最新のバージョンでないテーブルにマイグレーションを適用します。
+     * あるテーブルのマイグレーションに失敗した場合も、他のテーブルの処理は続行されます。
+     *
+     * @param tables 対象のテーブル
+     * @throws SQLException バージョンの読み込みまたはロックの取得に失敗した場合
+     *                      (バージョンのテーブルが存在しない場合を除く)
+     */
+    public void migrate(List<? extends DatabaseTable> tables) throws SQLException {
+        try (Connection connection = connector.getConnection()) {
+            Map<String, Integer> versions = readVersions(connection);
+            if (isUpToDate(tables, versions))
+                return;
+
+            acquireLock(connection);
+            try {
+                // ロックを待つ間に他のサーバーが適用している可能性があるため、再度読み込む
+                versions = readVersions(connection);
+                for (DatabaseTable table : tables)
+                    migrateTable(connection, table, versions.getOrDefault(table.getTablename(), 0));
+            } finally {
+                releaseLock(connection);
+            }
+        }
+    }
+
+    private boolean isUpToDate(List<? extends DatabaseTable> tables, Map<String, Integer> versions) {
+        for (DatabaseTable table : tables) {
+            if (versions.getOrDefault(table.getTablename(), 0) < table.getMigrationSteps().size())
+                return false;
+        }
+        return true;
+    }
+
+    private void migrateTable(Connection connection, DatabaseTable table, int currentVersion) {
+        val steps = table.getMigrationSteps();
+        for (int version = currentVersion + 1; version <= steps.size(); version++) {
+            try {
+                connection.setAutoCommit(false);
+                try {
+                    steps.get(version - 1).apply(connection);
+                    writeVersion(connection, table.getTablename(), version);
+                    connection.commit();
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(true);
+                }
+            } catch (SQLException e) {
+                logger.log(Level.WARNING, "Failed to migrate " + table.getTablename() + " to schema version " + version + ".", e);
+                return;
+            }
+            logger.log(Level.INFO, "Migrated " + table.getTablename() + " to schema version " + version + ".");
+        }
+    }
+
+    private Map<String, Integer> readVersions(Connection connection) throws SQLException {
+        Map<String, Integer> versions = new HashMap<>();
+        try (PreparedStatement ps = connection.prepareStatement("SELECT table_name, version FROM " + versionTable)) {
+            try (var rs = ps.executeQuery()) {
+                while (rs.next())
+                    versions.put(rs.getString("table_name"), rs.getInt("version"));
+            }
+        } catch (SQLException e) {
+            // 初回の起動時はバージョンのテーブルが存在しないため作成する
+            // タイムアウトや権限の不足など、それ以外の理由で失敗した場合は全てのステップを再実行しないよう中断する
+            if (versionTableExists(connection))
+                throw e;
+            try (PreparedStatement ps = connection.prepareStatement(
+                    "CREATE TABLE IF NOT EXISTS " + versionTable + " (" +
+                            "table_name VARCHAR(64) PRIMARY KEY, " +
+                            "version INT NOT NULL, " +
+                            "updated_at TIMESTAMP NOT NULL" +
+                            ")")) {
+                ps.execute();
+            }
+        }
+        return versions;
+    }
+
+    private boolean versionTableExists(Connection connection) throws SQLException {
+        try (ResultSet rs = connection.getMetaData().getTables(connection.getCatalog(), null, versionTable, new String[]{"TABLE"})) {
+            return rs.next();
+        }
+    }
+
+    private void writeVersion(Connection connection, String tableName, int version) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(connector.getDialect().upsert(versionTable,
+                List.of("table_name", "version", "updated_at"), List.of("table_name")))) {
+            ps.setString(1, tableName);
+            ps.setInt(2, version);
+            ps.setTimestamp(3, new Timestamp(System.currentTimeMillis()));
+            ps.execute();
+        }
+    }
+
+    private void acquireLock(Connection connection) throws SQLException {
+        // SQLiteは書き込みの接続が1つのみで、各ステップのトランザクションで排他される
+        if (!connector.getDialect().supportsNamedLocks())
+            return;
+
+        try (PreparedStatement ps = connection.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+            ps.setString(1, versionTable);
+            ps.setInt(2, LOCK_TIMEOUT_SECONDS);
+            try (var rs = ps.executeQuery()) {
+                if (!rs.next() || rs.getInt(1) != 1)
+                    throw new SQLException("Timed out waiting for the schema migration lock.");
+            }
+        }
+    }
+
+    private void releaseLock(Connection connection) throws SQLException {
+        if (!connector.getDialect().supportsNamedLocks())
+            return;
+
+        try (PreparedStatement ps = connection.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            ps.setString(1, versionTable);
+            ps.execute();
+        }
+    }
+}
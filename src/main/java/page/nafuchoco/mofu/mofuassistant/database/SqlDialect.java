@@ -0,0 +1,255 @@
+/*
+ * Copyright 2021 NAFU_at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package page.nafuchoco.mofu.mofuassistant.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * データベースごとに異なるSQLの構文を生成するクラス
+ * 書き込みは全て1つのステートメントで完結するように、各データベースのネイティブなUPSERTを使用する
+ */
+public enum SqlDialect {
+    /**
+     * SQLite 3.24以降
+     */
+    SQLITE {
+        @Override
+        public String upsert(String table, List<String> columns, List<String> keyColumns, String updates) {
+            return insert(table, columns) + " ON CONFLICT (" + String.join(", ", keyColumns) + ") DO UPDATE SET " + updates;
+        }
+
+        @Override
+        public String insertIfAbsent(String table, List<String> columns, List<String> keyColumns) {
+            return insert(table, columns) + " ON CONFLICT (" + String.join(", ", keyColumns) + ") DO NOTHING";
+        }
+
+        @Override
+        public String inserted(String column) {
+            return "excluded." + column;
+        }
+
+        @Override
+        public String longTextType() {
+            return "TEXT";
+        }
+
+        @Override
+        public String autoIncrementPrimaryKey() {
+            return "INTEGER PRIMARY KEY AUTOINCREMENT";
+        }
+
+        @Override
+        public String updatedTimestamp() {
+            // SQLiteには更新時に自動で変更される列がないため、書き込み時に明示的に設定する
+            return "TIMESTAMP DEFAULT CURRENT_TIMESTAMP";
+        }
+
+        @Override
+        public boolean columnExists(Connection connection, String table, String column) throws SQLException {
+            try (PreparedStatement ps = connection.prepareStatement("PRAGMA table_info(" + table + ")")) {
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        if (column.equals(rs.getString("name")))
+                            return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void createIndex(Connection connection, String table, String name, String columns) throws SQLException {
+            try (PreparedStatement ps = connection.prepareStatement(
+                    "CREATE INDEX IF NOT EXISTS " + name + " ON " + table + " (" + columns + ")")) {
+                ps.execute();
+            }
+        }
+
+        @Override
+        public boolean supportsNamedLocks() {
+            // 書き込みの接続が1つのみのため、トランザクションで排他される
+            return false;
+        }
+    },
+
+    /**
+     * MySQLおよびMariaDB
+     */
+    MYSQL {
+        @Override
+        public String upsert(String table, List<String> columns, List<String> keyColumns, String updates) {
+            return insert(table, columns) + " ON DUPLICATE KEY UPDATE " + updates;
+        }
+
+        @Override
+        public String insertIfAbsent(String table, List<String> columns, List<String> keyColumns) {
+            // INSERT IGNOREは重複以外のエラーも警告に変えてしまうため、何も変更しない更新句を使用する
+            String key = keyColumns.get(0);
+            return insert(table, columns) + " ON DUPLICATE KEY UPDATE " + key + " = " + key;
+        }
+
+        @Override
+        public String inserted(String column) {
+            // MySQL 8.0.20以降では非推奨だが、MariaDBは行エイリアスに対応していないためVALUES()を使用する
+            return "VALUES(" + column + ")";
+        }
+
+        @Override
+        public String longTextType() {
+            return "LONGTEXT";
+        }
+
+        @Override
+        public String autoIncrementPrimaryKey() {
+            return "INT AUTO_INCREMENT PRIMARY KEY";
+        }
+
+        @Override
+        public String updatedTimestamp() {
+            return "TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP";
+        }
+
+        @Override
+        public boolean columnExists(Connection connection, String table, String column) throws SQLException {
+            try (PreparedStatement ps = connection.prepareStatement(
+                    "SELECT 1 FROM INFORMATION_SCHEMA.COLUMNS " +
+                            "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND COLUMN_NAME = ?")) {
+                ps.setString(1, table);
+                ps.setString(2, column);
+                try (ResultSet rs = ps.executeQuery()) {
+                    return rs.next();
+                }
+            }
+        }
+
+        @Override
+        public void createIndex(Connection connection, String table, String name, String columns) throws SQLException {
+            // MySQLはCREATE INDEX IF NOT EXISTSに対応していないため、存在を確認してから作成する
+            try (PreparedStatement ps = connection.prepareStatement(
+                    "SELECT 1 FROM INFORMATION_SCHEMA.STATISTICS " +
+                            "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND INDEX_NAME = ?")) {
+                ps.setString(1, table);
+                ps.setString(2, name);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next())
+                        return;
+                }
+            }
+            try (PreparedStatement ps = connection.prepareStatement(
+                    "CREATE INDEX " + name + " ON " + table + " (" + columns + ")")) {
+                ps.execute();
+            }
+        }
+
+        @Override
+        public boolean supportsNamedLocks() {
+            return true;
+        }
+    };
+
+    /**
+     * 行を挿入し、主キーが重複する場合は既存の行を更新する1つのステートメントを生成します。
+     * プレースホルダーはcolumnsの順に並び、updatesでは{@link #inserted(String)}で挿入しようとした値を参照できます。
+     *
+     * @param table      対象のテーブル
+     * @param columns    挿入する列
+     * @param keyColumns 重複を判定する主キーの列
+     * @param updates    重複した場合に実行するSET句の内容
+     * @return 生成されたSQL
+     */
+    public abstract String upsert(String table, List<String> columns, List<String> keyColumns, String updates);
+
+    /**
+     * 行を挿入し、主キーが重複する場合はキー以外の列を挿入しようとした値で置き換えるステートメントを生成します。
+     * REPLACEと異なり既存の行を削除しないため、指定していない列の値は保持されます。
+     *
+     * @param table      対象のテーブル
+     * @param columns    挿入する列
+     * @param keyColumns 重複を判定する主キーの列
+     * @return 生成されたSQL
+     */
+    public String upsert(String table, List<String> columns, List<String> keyColumns) {
+        List<String> updates = new ArrayList<>();
+        for (String column : columns) {
+            if (!keyColumns.contains(column))
+                updates.add(column + " = " + inserted(column));
+        }
+        return upsert(table, columns, keyColumns, String.join(", ", updates));
+    }
+
+    /**
+     * 行を挿入し、主キーが重複する場合は何もしないステートメントを生成します。
+     *
+     * @param table      対象のテーブル
+     * @param columns    挿入する列
+     * @param keyColumns 重複を判定する主キーの列
+     * @return 生成されたSQL
+     */
+    public abstract String insertIfAbsent(String table, List<String> columns, List<String> keyColumns);
+
+    /**
+     * UPSERTの更新句で、挿入しようとした値を参照する式を返します。
+     *
+     * @param column 参照する列
+     * @return 挿入しようとした値を表す式
+     */
+    public abstract String inserted(String column);
+
+    public abstract String longTextType();
+
+    public abstract String autoIncrementPrimaryKey();
+
+    /**
+     * 最終更新日時を記録する列の型を返します。
+     * 自動で更新されないデータベースもあるため、書き込み時は常に値を設定してください。
+     *
+     * @return 列の型と既定値
+     */
+    public abstract String updatedTimestamp();
+
+    public abstract boolean columnExists(Connection connection, String table, String column) throws SQLException;
+
+    /**
+     * インデックスが存在しない場合に作成します。
+     *
+     * @param connection 使用する接続
+     * @param table      対象のテーブル
+     * @param name       インデックスの名前
+     * @param columns    インデックスに含める列 (カンマ区切り)
+     * @throws SQLException 作成に失敗した場合
+     */
+    public abstract void createIndex(Connection connection, String table, String name, String columns) throws SQLException;
+
+    /**
+     * GET_LOCKによる名前付きロックに対応しているかを返します。
+     *
+     * @return 対応している場合はtrue
+     */
+    public abstract boolean supportsNamedLocks();
+
+    private static String insert(String table, List<String> columns) {
+        return "INSERT INTO " + table + " (" + String.join(", ", columns) + ") VALUES (" +
+                String.join(", ", Collections.nCopies(columns.size(), "?")) + ")";
+    }
+}
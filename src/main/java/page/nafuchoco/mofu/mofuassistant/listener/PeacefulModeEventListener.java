@@ -16,43 +16,39 @@
 
 package page.nafuchoco.mofu.mofuassistant.listener;
 
-import lombok.val;
 import org.bukkit.entity.Player;
-import org.bukkit.entity.TNTPrimed;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.entity.*;
-import org.bukkit.potion.PotionEffect;
-import org.bukkit.potion.PotionEffectType;
 import page.nafuchoco.mofu.mofuassistant.MobHelper;
-import page.nafuchoco.mofu.mofuassistant.MofuAssistantApi;
+import page.nafuchoco.mofu.mofuassistant.MofuAssistant;
+import page.nafuchoco.mofu.mofuassistant.peaceful.PeacefulEffectApplier;
+import page.nafuchoco.mofu.mofuassistant.peaceful.PeacefulPlayerIndex;
+import page.nafuchoco.mofu.mofuassistant.peaceful.PeacefulRuleSet;
 
 public class PeacefulModeEventListener implements Listener {
+    private final PeacefulPlayerIndex peacefulPlayerIndex;
+    private final PeacefulEffectApplier effectApplier;
+
+    public PeacefulModeEventListener(PeacefulPlayerIndex peacefulPlayerIndex, PeacefulEffectApplier effectApplier) {
+        this.peacefulPlayerIndex = peacefulPlayerIndex;
+        this.effectApplier = effectApplier;
+    }
 
     @EventHandler
     public void onEntityTargetEvent(EntityTargetEvent event) {
-        if (event.getTarget() instanceof Player player) {
-            val playerData = MofuAssistantApi.getInstance().getPlayerData(player);
-            if (playerData.getSettings().isPeacefulMode(player.getWorld())) {
-                if (MobHelper.isOffensive(event.getEntity()) &&
-                        (event.getReason() == EntityTargetEvent.TargetReason.CLOSEST_PLAYER
-                                || event.getReason() == EntityTargetEvent.TargetReason.TARGET_ATTACKED_ENTITY
-                                || event.getReason() == EntityTargetEvent.TargetReason.TARGET_ATTACKED_NEARBY_ENTITY))
-                    event.setCancelled(true);
-            }
+        if (event.getTarget() instanceof Player player && peacefulPlayerIndex.isPeaceful(player)) {
+            if (MobHelper.isOffensive(event.getEntity())
+                    && getRuleSet().isCancelledTargetReason(event.getReason()))
+                event.setCancelled(true);
         }
     }
 
     @EventHandler
     public void onEntityDamageEvent(EntityDamageEvent event) {
-        if (event.getEntity() instanceof Player player) {
-            val playerData = MofuAssistantApi.getInstance().getPlayerData(player);
-            if (playerData.getSettings().isPeacefulMode(player.getWorld())) {
-                if (player.getHealth() - event.getDamage() < 20.0) {
-                    val effect = new PotionEffect(PotionEffectType.REGENERATION, 100, 2, false, false, false);
-                    player.addPotionEffect(effect);
-                }
-            }
+        if (event.getEntity() instanceof Player player && peacefulPlayerIndex.isPeaceful(player)) {
+            if (player.getHealth() - event.getDamage() < 20.0)
+                effectApplier.applyRegeneration(player);
         }
     }
 
@@ -61,15 +57,13 @@ public class PeacefulModeEventListener implements Listener {
         boolean cancelled = event.isCancelled(); // 今後追加の可能性
         // プレイヤーに対する攻撃に関する処理
         if (event.getEntity() instanceof Player player) {
-            val playerData = MofuAssistantApi.getInstance().getPlayerData(player);
-            if (playerData.getSettings().isPeacefulMode(player.getWorld())) {
-                if (event.getDamager() instanceof TNTPrimed) // TNT爆破の無効化
+            if (peacefulPlayerIndex.isPeaceful(player)) {
+                if (getRuleSet().isBlockedDamager(event.getDamager())) // TNT爆破などの無効化
                     cancelled = true;
             }
         } else if (event.getDamager() instanceof Player player
                 && MobHelper.isHostile(event.getEntity())) { // プレイヤーによる攻撃に関する処理
-            val playerData = MofuAssistantApi.getInstance().getPlayerData(player);
-            if (playerData.getSettings().isPeacefulMode(player.getWorld()) && !player.hasPermission("mofuassistant.peaceful.bypass"))
+            if (peacefulPlayerIndex.isPeaceful(player) && !peacefulPlayerIndex.isBypassing(player))
                 cancelled = true;
         }
 
@@ -78,30 +72,22 @@ public class PeacefulModeEventListener implements Listener {
 
     @EventHandler
     public void onEntityPotionEffectEvent(EntityPotionEffectEvent event) {
-        if (event.getEntity() instanceof Player player) {
-            val playerData = MofuAssistantApi.getInstance().getPlayerData(player);
-            if (playerData.getSettings().isPeacefulMode(player.getWorld()) && event.getNewEffect() != null) {
-                val effectType = event.getNewEffect().getType();
-                if (PotionEffectType.POISON.equals(effectType)
-                        || PotionEffectType.WITHER.equals(effectType)
-                        || PotionEffectType.HUNGER.equals(effectType)
-                        || PotionEffectType.CONFUSION.equals(effectType)) {
-                    event.setCancelled(true);
-                }
-            }
+        if (event.getEntity() instanceof Player player && peacefulPlayerIndex.isPeaceful(player)
+                && event.getNewEffect() != null) {
+            if (getRuleSet().isBlockedEffect(event.getNewEffect().getType()))
+                event.setCancelled(true);
         }
     }
 
     @EventHandler
     public void onFoodLevelChangeEvent(FoodLevelChangeEvent event) {
-        if (event.getEntity() instanceof Player player) {
-            val playerData = MofuAssistantApi.getInstance().getPlayerData(player);
-            if (playerData.getSettings().isPeacefulMode(player.getWorld())) {
-                if (event.getFoodLevel() < 20) { // 空腹度の回復
-                    val effect = new PotionEffect(PotionEffectType.SATURATION, 40, 0, false, false, false);
-                    player.addPotionEffect(effect);
-                }
-            }
+        if (event.getEntity() instanceof Player player && peacefulPlayerIndex.isPeaceful(player)) {
+            if (event.getFoodLevel() < 20) // 空腹度の回復
+                effectApplier.applySaturation(player);
         }
     }
+
+    private PeacefulRuleSet getRuleSet() {
+        return MofuAssistant.getInstance().getPluginConfig().getPeacefulRuleSet();
+    }
 }
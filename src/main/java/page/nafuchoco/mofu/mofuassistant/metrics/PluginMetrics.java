@@ -0,0 +1,180 @@
+/*
+ * Copyright 2021 NAFU_at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package page.nafuchoco.mofu.mofuassistant.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * プラグイン内部の計測値を保持するクラス
+ * 計測値は /assistant metrics で一覧表示できる
+ */
+public class PluginMetrics {
+    private final Map<String, LongAdder> counters = new ConcurrentSkipListMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentSkipListMap<>();
+    private final Map<String, Timer> timers = new ConcurrentSkipListMap<>();
+    private final Map<String, Histogram> histograms = new ConcurrentSkipListMap<>();
+
+    /**
+     * 指定した名前のカウンターを返します。存在しない場合は作成されます。
+     *
+     * @param name カウンター名
+     * @return カウンター
+     */
+    public LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, key -> new LongAdder());
+    }
+
+    /**
+     * 参照時に値を取得するゲージを登録します。同じ名前のゲージは置き換えられます。
+     *
+     * @param name     ゲージ名
+     * @param supplier 値の取得元
+     */
+    public void gauge(String name, LongSupplier supplier) {
+        gauges.put(name, supplier);
+    }
+
+    /**
+     * 指定した名前のタイマーを返します。存在しない場合は作成されます。
+     *
+     * @param name タイマー名
+     * @return タイマー
+     */
+    public Timer timer(String name) {
+        return timers.computeIfAbsent(name, key -> new Timer());
+    }
+
+    /**
+     * 指定した名前のヒストグラムを返します。存在しない場合は作成されます。
+     *
+     * @param name ヒストグラム名
+     * @return ヒストグラム
+     */
+    public Histogram histogram(String name) {
+        return histograms.computeIfAbsent(name, key -> new Histogram());
+    }
+
+    /**
+     * 全ての計測値を表示用の文字列で返します。
+     *
+     * @return 計測値の一覧
+     */
+    public List<String> describe() {
+        List<String> lines = new ArrayList<>();
+        counters.forEach((name, counter) -> lines.add(name + ": " + counter.sum()));
+        gauges.forEach((name, gauge) -> lines.add(name + ": " + gauge.getAsLong()));
+        timers.forEach((name, timer) -> lines.add(name + ": " + timer));
+        histograms.forEach((name, histogram) -> lines.add(name + ": " + histogram));
+        return lines;
+    }
+
+
+    public static class Timer {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        public void record(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getTotalNanos() {
+            return totalNanos.sum();
+        }
+
+        public long getMaxNanos() {
+            return maxNanos.get();
+        }
+
+        @Override
+        public String toString() {
+            long count = getCount();
+            double averageMillis = count == 0 ? 0 : getTotalNanos() / (double) count / 1_000_000;
+            return String.format("count=%d, avg=%.3fms, max=%.3fms", count, averageMillis, getMaxNanos() / 1_000_000.0);
+        }
+    }
+
+    /**
+     * 0以上の値の分布を記録するヒストグラム
+     * 値は2の累乗ごとの区間で集計されるため、パーセンタイルは区間の上限による近似値となる
+     */
+    public static class Histogram {
+        private final AtomicLongArray buckets = new AtomicLongArray(Long.SIZE + 1);
+        private final LongAdder count = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        public void record(long value) {
+            if (value < 0)
+                value = 0;
+            buckets.incrementAndGet(Long.SIZE - Long.numberOfLeadingZeros(value));
+            count.increment();
+            max.accumulateAndGet(value, Math::max);
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getMax() {
+            return max.get();
+        }
+
+        /**
+         * 指定したパーセンタイルの近似値を返します。
+         *
+         * @param percentile 0より大きく1以下の割合
+         * @return パーセンタイルの近似値
+         */
+        public long getPercentile(double percentile) {
+            long total = 0;
+            for (int i = 0; i < buckets.length(); i++)
+                total += buckets.get(i);
+            if (total == 0)
+                return 0;
+
+            long rank = (long) Math.ceil(total * percentile);
+            long seen = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) {
+                    long upperBound = i == 0 ? 0 : i == Long.SIZE ? Long.MAX_VALUE : (1L << i) - 1;
+                    return Math.min(upperBound, getMax());
+                }
+            }
+            return getMax();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("count=%d, p50=%d, p95=%d, p99=%d, max=%d",
+                    getCount(), getPercentile(0.5), getPercentile(0.95), getPercentile(0.99), getMax());
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2021 NAFU_at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package page.nafuchoco.mofu.mofuassistant.peaceful;
+
+import java.util.Arrays;
+
+/**
+ * チャンク座標をキーとするハッシュマップ
+ * チャンク以外の単位のグリッド座標にも使用できる
+ * キーを64bitに詰めてオープンアドレス法で保持するため、参照時にオブジェクトを生成しない
+ *
+ * @param <V> 値の型 (nullは格納できない)
+ */
+public class ChunkKeyedMap<V> {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private long[] keys;
+    private Object[] values;
+    private int size;
+
+    public ChunkKeyedMap() {
+        this.keys = new long[INITIAL_CAPACITY];
+        this.values = new Object[INITIAL_CAPACITY];
+    }
+
+    /**
+     * チャンク座標を1つのlong値に変換します。
+     *
+     * @param chunkX チャンクのX座標
+     * @param chunkZ チャンクのZ座標
+     * @return キー
+     */
+    public static long key(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+
+    public V get(int chunkX, int chunkZ) {
+        return get(key(chunkX, chunkZ));
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        int mask = keys.length - 1;
+        for (int slot = slot(key, mask); values[slot] != null; slot = (slot + 1) & mask) {
+            if (keys[slot] == key)
+                return (V) values[slot];
+        }
+        return null;
+    }
+
+    public void put(int chunkX, int chunkZ, V value) {
+        put(key(chunkX, chunkZ), value);
+    }
+
+    public void put(long key, V value) {
+        if (value == null)
+            throw new IllegalArgumentException("The value must not be null.");
+
+        int mask = keys.length - 1;
+        int slot = slot(key, mask);
+        for (; values[slot] != null; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return;
+            }
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        // 負荷率を0.5以下に保つ
+        if (++size * 2 > keys.length)
+            resize(keys.length * 2);
+    }
+
+    public void remove(int chunkX, int chunkZ) {
+        remove(key(chunkX, chunkZ));
+    }
+
+    public void remove(long key) {
+        int mask = keys.length - 1;
+        int slot = slot(key, mask);
+        for (; values[slot] != null; slot = (slot + 1) & mask) {
+            if (keys[slot] == key)
+                break;
+        }
+        if (values[slot] == null)
+            return;
+
+        // 後続の要素を詰めて、探索の連続性を維持する
+        int gap = slot;
+        for (int next = (gap + 1) & mask; values[next] != null; next = (next + 1) & mask) {
+            int home = slot(keys[next], mask);
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+        }
+        values[gap] = null;
+        size--;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new long[capacity];
+        values = new Object[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] == null)
+                continue;
+            int slot = slot(oldKeys[i], mask);
+            while (values[slot] != null)
+                slot = (slot + 1) & mask;
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+        }
+    }
+
+    private static int slot(long key, int mask) {
+        // 隣接するチャンクが近いスロットに集中しないように撹拌する
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2021 NAFU_at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package page.nafuchoco.mofu.mofuassistant.peaceful;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Mob;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitTask;
+import page.nafuchoco.mofu.mofuassistant.MobHelper;
+import page.nafuchoco.mofu.mofuassistant.MofuAssistant;
+import page.nafuchoco.mofu.mofuassistant.metrics.PluginMetrics;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ピースフルモードに切り替えたプレイヤーを狙っているMobのターゲットを解除するジョブ
+ * 同じtick内の切り替えは1回の走査にまとめ、周辺のチャンクをtickごとの時間予算内で少しずつ処理する
+ */
+public class DeaggroScanner {
+    private final MofuAssistant plugin;
+    private final PeacefulPlayerIndex peacefulPlayerIndex;
+    private final PluginMetrics.Timer scanDuration;
+    private final PluginMetrics.Timer tickDuration;
+    private final LongAdder scannedChunks;
+    private final LongAdder clearedTargets;
+
+    // 次の走査を待っているプレイヤー
+    private final Set<UUID> requestedPlayers;
+    // 実行中の走査の対象プレイヤーと残りのチャンク
+    private final Set<UUID> scanTargets;
+    private final Deque<ChunkPosition> pendingChunks;
+    private long scanStartedAt;
+    private BukkitTask task;
+
+    public DeaggroScanner(MofuAssistant plugin, PeacefulPlayerIndex peacefulPlayerIndex) {
+        this.plugin = plugin;
+        this.peacefulPlayerIndex = peacefulPlayerIndex;
+        this.scanDuration = plugin.getMetrics().timer("deaggro.scan.duration");
+        this.tickDuration = plugin.getMetrics().timer("deaggro.scan.tick");
+        this.scannedChunks = plugin.getMetrics().counter("deaggro.scan.chunks");
+        this.clearedTargets = plugin.getMetrics().counter("deaggro.scan.cleared");
+        this.requestedPlayers = new HashSet<>();
+        this.scanTargets = new HashSet<>();
+        this.pendingChunks = new ArrayDeque<>();
+    }
+
+    /**
+     * プレイヤー周辺の走査を要求します。
+     * 走査は次のtickから開始され、それまでに要求されたプレイヤーはまとめて処理されます。
+     *
+     * @param player ピースフルモードに切り替えたプレイヤー
+     */
+    public void request(Player player) {
+        requestedPlayers.add(player.getUniqueId());
+        if (task == null)
+            task = Bukkit.getScheduler().runTaskTimer(plugin, this::tick, 1L, 1L);
+    }
+
+    public void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        requestedPlayers.clear();
+        scanTargets.clear();
+        pendingChunks.clear();
+    }
+
+    private void tick() {
+        long tickStartedAt = System.nanoTime();
+        if (pendingChunks.isEmpty()) {
+            if (requestedPlayers.isEmpty()) {
+                task.cancel();
+                task = null;
+                return;
+            }
+            beginScan(tickStartedAt);
+        }
+
+        // 予算に関係なく1tickに最低1チャンクは処理し、走査が終わらなくなることを防ぐ
+        long budgetNanos = (long) (plugin.getPluginConfig().getDeaggroConfig().tickBudgetMillis() * 1_000_000);
+        if (!pendingChunks.isEmpty())
+            scanChunk(pendingChunks.poll());
+        while (!pendingChunks.isEmpty() && System.nanoTime() - tickStartedAt < budgetNanos)
+            scanChunk(pendingChunks.poll());
+
+        long now = System.nanoTime();
+        tickDuration.record(now - tickStartedAt);
+        if (pendingChunks.isEmpty()) {
+            scanDuration.record(now - scanStartedAt);
+            scanTargets.clear();
+        }
+    }
+
+    private void beginScan(long now) {
+        int chunkRadius = (plugin.getPluginConfig().getDeaggroConfig().radius() + 15) >> 4;
+        Set<ChunkPosition> chunks = new LinkedHashSet<>();
+        for (UUID uuid : requestedPlayers) {
+            Player player = Bukkit.getPlayer(uuid);
+            if (player == null)
+                continue;
+
+            scanTargets.add(uuid);
+            Location location = player.getLocation();
+            int centerX = location.getBlockX() >> 4;
+            int centerZ = location.getBlockZ() >> 4;
+            for (int x = centerX - chunkRadius; x <= centerX + chunkRadius; x++) {
+                for (int z = centerZ - chunkRadius; z <= centerZ + chunkRadius; z++)
+                    chunks.add(new ChunkPosition(location.getWorld(), x, z));
+            }
+        }
+        requestedPlayers.clear();
+        pendingChunks.addAll(chunks);
+        scanStartedAt = now;
+    }
+
+    private void scanChunk(ChunkPosition position) {
+        // 読み込まれていないチャンクを走査のために読み込むことはしない
+        if (!position.world().isChunkLoaded(position.x(), position.z()))
+            return;
+
+        scannedChunks.increment();
+        for (Entity entity : position.world().getChunkAt(position.x(), position.z()).getEntities()) {
+            if (MobHelper.isOffensive(entity)
+                    && ((Mob) entity).getTarget() instanceof Player target
+                    && scanTargets.contains(target.getUniqueId())
+                    && peacefulPlayerIndex.isPeaceful(target)) {
+                ((Mob) entity).setTarget(null);
+                clearedTargets.increment();
+            }
+        }
+    }
+
+
+    private record ChunkPosition(World world, int x, int z) {
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2021 NAFU_at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package page.nafuchoco.mofu.mofuassistant.peaceful;
+
+import net.luckperms.api.LuckPerms;
+import net.luckperms.api.event.user.UserDataRecalculateEvent;
+import org.bukkit.entity.Player;
+import page.nafuchoco.mofu.mofuassistant.MofuAssistant;
+import page.nafuchoco.mofu.mofuassistant.metrics.PluginMetrics;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * mofuassistant.peaceful.bypass の権限の判定結果をプレイヤーごとに保持するキャッシュ
+ * LuckPermsの権限の再計算時に破棄されるほか、イベントが発生しない権限アタッチメントの変更に備えて一定時間で失効する
+ */
+public class PeacefulBypassCache {
+    public static final String BYPASS_PERMISSION = "mofuassistant.peaceful.bypass";
+    private static final long TTL_MILLIS = 5000;
+
+    // LuckPermsのイベントは非同期で発生するため、スレッドセーフなMapを使用する
+    private final Map<UUID, Entry> entries;
+    private final LongAdder resolved;
+
+    public PeacefulBypassCache(PluginMetrics metrics) {
+        this.entries = new ConcurrentHashMap<>();
+        this.resolved = metrics.counter("peaceful.bypass.resolved");
+    }
+
+    /**
+     * LuckPermsのユーザーデータの再計算時にキャッシュを破棄するよう登録します。
+     *
+     * @param plugin    イベントを登録するプラグイン
+     * @param luckPerms LuckPermsのAPI
+     */
+    public void subscribe(MofuAssistant plugin, LuckPerms luckPerms) {
+        luckPerms.getEventBus().subscribe(plugin, UserDataRecalculateEvent.class,
+                event -> invalidate(event.getUser().getUniqueId()));
+    }
+
+    /**
+     * プレイヤーがピースフルモードの制限を無視できるかどうかを返します。
+     *
+     * @param player 判定するプレイヤー
+     * @return 権限を持っている場合はtrue
+     */
+    public boolean isBypassing(Player player) {
+        long now = System.currentTimeMillis();
+        Entry entry = entries.get(player.getUniqueId());
+        if (entry != null && entry.expiresAt() > now)
+            return entry.bypass();
+
+        boolean bypass = player.hasPermission(BYPASS_PERMISSION);
+        entries.put(player.getUniqueId(), new Entry(bypass, now + TTL_MILLIS));
+        resolved.increment();
+        return bypass;
+    }
+
+    public void invalidate(UUID uuid) {
+        entries.remove(uuid);
+    }
+
+    public void invalidateAll() {
+        entries.clear();
+    }
+
+
+    private record Entry(boolean bypass, long expiresAt) {
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2021 NAFU_at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package page.nafuchoco.mofu.mofuassistant.peaceful;
+
+import org.bukkit.entity.Player;
+import org.bukkit.potion.PotionEffect;
+import org.bukkit.potion.PotionEffectType;
+import page.nafuchoco.mofu.mofuassistant.metrics.PluginMetrics;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ピースフルモードのプレイヤーに回復効果を付与するクラス
+ * 付与した効果の残り時間が十分な間は再付与せず、効果の生成とパケットの送信を抑える
+ */
+public class PeacefulEffectApplier {
+    // PotionEffectは不変のため、全てのプレイヤーで同じインスタンスを共有する
+    private static final PotionEffect REGENERATION = new PotionEffect(PotionEffectType.REGENERATION, 100, 2, false, false, false);
+    private static final PotionEffect SATURATION = new PotionEffect(PotionEffectType.SATURATION, 40, 0, false, false, false);
+    private static final int REGENERATION_SLOT = 0;
+    private static final int SATURATION_SLOT = 1;
+
+    // プレイヤーごとの、最後に付与した効果が切れる時刻 (ミリ秒)
+    private final Map<UUID, long[]> expiries;
+    private final LongAdder regenerationApplied;
+    private final LongAdder regenerationSkipped;
+    private final LongAdder saturationApplied;
+    private final LongAdder saturationSkipped;
+
+    public PeacefulEffectApplier(PluginMetrics metrics) {
+        this.expiries = new HashMap<>();
+        this.regenerationApplied = metrics.counter("peaceful.effect.regeneration.applied");
+        this.regenerationSkipped = metrics.counter("peaceful.effect.regeneration.skipped");
+        this.saturationApplied = metrics.counter("peaceful.effect.saturation.applied");
+        this.saturationSkipped = metrics.counter("peaceful.effect.saturation.skipped");
+    }
+
+    public void applyRegeneration(Player player) {
+        apply(player, REGENERATION, REGENERATION_SLOT, regenerationApplied, regenerationSkipped);
+    }
+
+    public void applySaturation(Player player) {
+        apply(player, SATURATION, SATURATION_SLOT, saturationApplied, saturationSkipped);
+    }
+
+    /**
+     * プレイヤーの付与記録を破棄します。
+     *
+     * @param player ログアウトしたプレイヤー
+     */
+    public void forget(Player player) {
+        expiries.remove(player.getUniqueId());
+    }
+
+    private void apply(Player player, PotionEffect effect, int slot, LongAdder applied, LongAdder skipped) {
+        long now = System.currentTimeMillis();
+        long[] expiry = expiries.computeIfAbsent(player.getUniqueId(), uuid -> new long[2]);
+        // 効果時間の半分以上が残っていれば再付与しない
+        // 牛乳などで効果が消されている場合に備えて、実際に効果が有効かも確認する
+        long durationMillis = effect.getDuration() * 50L;
+        if (expiry[slot] - now > durationMillis / 2 && player.hasPotionEffect(effect.getType())) {
+            skipped.increment();
+            return;
+        }
+
+        player.addPotionEffect(effect);
+        expiry[slot] = now + durationMillis;
+        applied.increment();
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2021 NAFU_at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package page.nafuchoco.mofu.mofuassistant.peaceful;
+
+import lombok.val;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import page.nafuchoco.mofu.mofuassistant.MofuAssistant;
+import page.nafuchoco.mofu.mofuassistant.MofuAssistantApi;
+import page.nafuchoco.mofu.mofuassistant.event.PlayerPeacefulModeChangeEvent;
+import page.nafuchoco.mofu.mofuassistant.listener.PeacefulModeEventListener;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * ピースフルモードが有効なオンラインプレイヤーの索引
+ * 索引とピースフルゾーンが共に空の間はPeacefulModeEventListenerをHandlerListから外しておく
+ */
+public class PeacefulPlayerIndex implements Listener {
+    private final MofuAssistant plugin;
+    private final PeacefulModeEventListener peacefulListener;
+    private final PeacefulEffectApplier effectApplier;
+    private final PeacefulBypassCache bypassCache;
+    private final PeacefulZoneIndex zoneIndex;
+    private final Set<UUID> peacefulPlayers;
+    // 事前読み込みが完了しておらず、非同期で読み込み中のプレイヤー
+    private final Set<UUID> pendingLoads;
+    // ゾーン判定用に使い回す座標 (メインスレッドからのみ使用する)
+    private final Location scratchLocation;
+    private boolean listenerRegistered;
+
+    public PeacefulPlayerIndex(MofuAssistant plugin, PeacefulZoneIndex zoneIndex) {
+        this.plugin = plugin;
+        this.zoneIndex = zoneIndex;
+        this.scratchLocation = new Location(null, 0, 0, 0);
+        this.effectApplier = new PeacefulEffectApplier(plugin.getMetrics());
+        this.bypassCache = new PeacefulBypassCache(plugin.getMetrics());
+        this.peacefulListener = new PeacefulModeEventListener(this, effectApplier);
+        this.peacefulPlayers = new HashSet<>();
+        this.pendingLoads = new HashSet<>();
+    }
+
+    /**
+     * プレイヤーが現在のワールドでピースフルモード、またはピースフルゾーン内にいるかどうかを返します。
+     *
+     * @param player 判定するプレイヤー
+     * @return ピースフルモードの場合はtrue
+     */
+    public boolean isPeaceful(Player player) {
+        if (peacefulPlayers.contains(player.getUniqueId()))
+            return true;
+        return !zoneIndex.isEmpty() && zoneIndex.contains(player.getLocation(scratchLocation));
+    }
+
+    /**
+     * プレイヤーがピースフルモードの制限を無視できるかどうかを、キャッシュされた判定結果から返します。
+     *
+     * @param player 判定するプレイヤー
+     * @return mofuassistant.peaceful.bypass の権限を持っている場合はtrue
+     */
+    public boolean isBypassing(Player player) {
+        return bypassCache.isBypassing(player);
+    }
+
+    public PeacefulBypassCache getBypassCache() {
+        return bypassCache;
+    }
+
+    public boolean isEmpty() {
+        return peacefulPlayers.isEmpty();
+    }
+
+    public int size() {
+        return peacefulPlayers.size();
+    }
+
+    /**
+     * プレイヤーデータを参照してプレイヤーの状態を索引に反映します。
+     * プレイヤーデータの読み込みが完了していない場合は、読み込みが完了するまでピースフルモードではないものとして扱います。
+     *
+     * @param player 対象のプレイヤー
+     */
+    public void refresh(Player player) {
+        val playerData = MofuAssistantApi.getInstance().getLoadedPlayerData(player);
+        if (playerData == null) {
+            update(player, false);
+            loadAsync(player);
+            return;
+        }
+        update(player, playerData.getSettings().isPeacefulMode(player.getWorld()));
+    }
+
+    /**
+     * 全てのオンラインプレイヤーの状態を索引に反映します。
+     * 設定の再読み込み後など、判定条件が変わった場合に使用します。
+     */
+    public void refreshAll() {
+        for (Player player : Bukkit.getOnlinePlayers())
+            refresh(player);
+    }
+
+    public void update(Player player, boolean peaceful) {
+        if (peaceful)
+            peacefulPlayers.add(player.getUniqueId());
+        else
+            peacefulPlayers.remove(player.getUniqueId());
+        updateListenerRegistration();
+    }
+
+    private void loadAsync(Player player) {
+        UUID uuid = player.getUniqueId();
+        if (!pendingLoads.add(uuid))
+            return;
+
+        MofuAssistantApi.getInstance().loadPlayerDataAsync(player, () -> {
+            pendingLoads.remove(uuid);
+            refresh(player);
+        });
+    }
+
+    public void remove(Player player) {
+        peacefulPlayers.remove(player.getUniqueId());
+        pendingLoads.remove(player.getUniqueId());
+        updateListenerRegistration();
+    }
+
+    /**
+     * 索引とピースフルゾーンの状態に応じてリスナーの登録を切り替えます。
+     * ゾーンを変更した場合にも呼び出す必要があります。
+     */
+    public void updateListenerRegistration() {
+        boolean required = !peacefulPlayers.isEmpty() || !zoneIndex.isEmpty();
+        if (required && !listenerRegistered) {
+            plugin.getServer().getPluginManager().registerEvents(peacefulListener, plugin);
+            listenerRegistered = true;
+        } else if (!required && listenerRegistered) {
+            HandlerList.unregisterAll(peacefulListener);
+            listenerRegistered = false;
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoinEvent(PlayerJoinEvent event) {
+        refresh(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuitEvent(PlayerQuitEvent event) {
+        remove(event.getPlayer());
+        effectApplier.forget(event.getPlayer());
+        bypassCache.invalidate(event.getPlayer().getUniqueId());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerChangedWorldEvent(PlayerChangedWorldEvent event) {
+        // ワールドごとに異なる権限が設定されている場合に備える
+        bypassCache.invalidate(event.getPlayer().getUniqueId());
+        refresh(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerPeacefulModeChangeEvent(PlayerPeacefulModeChangeEvent event) {
+        refresh(event.getPlayer());
+    }
+}
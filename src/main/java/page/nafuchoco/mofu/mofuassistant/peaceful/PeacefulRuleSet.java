@@ -0,0 +1,108 @@
+/*
+ * Copyright 2021 NAFU_at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package page.nafuchoco.mofu.mofuassistant.peaceful;
+
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.EntityType;
+import org.bukkit.event.entity.EntityTargetEvent;
+import org.bukkit.potion.PotionEffectType;
+import page.nafuchoco.mofu.mofuassistant.MofuAssistant;
+import page.nafuchoco.mofu.mofuassistant.MofuAssistantConfig;
+
+import java.util.*;
+import java.util.logging.Level;
+
+/**
+ * 設定から構築したピースフルモードの判定ルール
+ * 構築後は変更されないため、リロード時はインスタンスごと差し替える
+ */
+public final class PeacefulRuleSet {
+    // PotionEffectTypeはラッパーと実体でインスタンスが異なるため、IDで比較されるHashSetを使用する
+    private final Set<PotionEffectType> blockedEffects;
+    private final Set<EntityTargetEvent.TargetReason> cancelledTargetReasons;
+    private final Set<EntityType> blockedDamagers;
+
+    private PeacefulRuleSet(Set<PotionEffectType> blockedEffects,
+                            Set<EntityTargetEvent.TargetReason> cancelledTargetReasons,
+                            Set<EntityType> blockedDamagers) {
+        this.blockedEffects = blockedEffects;
+        this.cancelledTargetReasons = cancelledTargetReasons;
+        this.blockedDamagers = blockedDamagers;
+    }
+
+    /**
+     * 設定からルールを構築します。認識できない名前は警告を出力して無視されます。
+     *
+     * @param config ピースフルモードのルール設定
+     * @return 構築されたルール
+     */
+    public static PeacefulRuleSet compile(MofuAssistantConfig.PeacefulRulesConfig config) {
+        Set<PotionEffectType> blockedEffects = new HashSet<>();
+        for (String name : config.blockedEffects()) {
+            PotionEffectType type = PotionEffectType.getByName(name.toUpperCase());
+            if (type == null)
+                warnUnknown("potion effect type", name);
+            else
+                blockedEffects.add(type);
+        }
+
+        Set<EntityTargetEvent.TargetReason> cancelledTargetReasons = EnumSet.noneOf(EntityTargetEvent.TargetReason.class);
+        for (String name : config.cancelledTargetReasons()) {
+            try {
+                cancelledTargetReasons.add(EntityTargetEvent.TargetReason.valueOf(name.toUpperCase()));
+            } catch (IllegalArgumentException e) {
+                warnUnknown("target reason", name);
+            }
+        }
+
+        Set<EntityType> blockedDamagers = EnumSet.noneOf(EntityType.class);
+        for (String name : config.blockedDamagers()) {
+            try {
+                blockedDamagers.add(EntityType.valueOf(name.toUpperCase()));
+            } catch (IllegalArgumentException e) {
+                warnUnknown("entity type", name);
+            }
+        }
+
+        return new PeacefulRuleSet(blockedEffects, cancelledTargetReasons, blockedDamagers);
+    }
+
+    public boolean isBlockedEffect(PotionEffectType type) {
+        return blockedEffects.contains(type);
+    }
+
+    public boolean isCancelledTargetReason(EntityTargetEvent.TargetReason reason) {
+        return cancelledTargetReasons.contains(reason);
+    }
+
+    public boolean isBlockedDamager(Entity damager) {
+        return blockedDamagers.contains(damager.getType());
+    }
+
+    private static void warnUnknown(String kind, String name) {
+        MofuAssistant.getInstance().getLogger().log(Level.WARNING, "Unknown " + kind + " in peaceful mode rules: " + name);
+    }
+
+    @Override
+    public String toString() {
+        return "PeacefulRuleSet{" +
+                "blockedEffects=" + blockedEffects +
+                ", cancelledTargetReasons=" + cancelledTargetReasons +
+                ", blockedDamagers=" + blockedDamagers +
+                '}';
+    }
+}
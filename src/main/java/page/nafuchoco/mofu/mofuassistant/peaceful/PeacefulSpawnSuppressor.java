@@ -0,0 +1,171 @@
+/*
+ * Copyright 2021 NAFU_at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package page.nafuchoco.mofu.mofuassistant.peaceful;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.LivingEntity;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.event.entity.CreatureSpawnEvent;
+import org.bukkit.scheduler.BukkitTask;
+import page.nafuchoco.mofu.mofuassistant.MobHelper;
+import page.nafuchoco.mofu.mofuassistant.MofuAssistant;
+import page.nafuchoco.mofu.mofuassistant.MofuAssistantConfig;
+import page.nafuchoco.mofu.mofuassistant.data.WorldIndex;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ピースフルモードのプレイヤー周辺とピースフルゾーン内での敵対Mobの自然スポーンを抑制するリスナー
+ * プレイヤーの位置は一定間隔でワールドごとのグリッドに集計し、スポーン時は周囲3x3のセルのみを参照する
+ */
+public class PeacefulSpawnSuppressor implements Listener {
+    // プレイヤーの位置を集計し直す間隔 (tick)
+    private static final long REFRESH_INTERVAL = 20L;
+
+    private final MofuAssistant plugin;
+    private final PeacefulPlayerIndex peacefulPlayerIndex;
+    private final PeacefulZoneIndex peacefulZoneIndex;
+    private final LongAdder checkedSpawns;
+    private final LongAdder suppressedSpawns;
+
+    // WorldIndexのインデックスを添字とする、セル座標をキーとしたプレイヤーのX/Z座標の配列
+    private ChunkKeyedMap<double[]>[] grids;
+    private int cellSize;
+    private double radiusSquared;
+    private BukkitTask task;
+
+    @SuppressWarnings("unchecked")
+    public PeacefulSpawnSuppressor(MofuAssistant plugin, PeacefulPlayerIndex peacefulPlayerIndex, PeacefulZoneIndex peacefulZoneIndex) {
+        this.plugin = plugin;
+        this.peacefulPlayerIndex = peacefulPlayerIndex;
+        this.peacefulZoneIndex = peacefulZoneIndex;
+        this.checkedSpawns = plugin.getMetrics().counter("spawn.checked");
+        this.suppressedSpawns = plugin.getMetrics().counter("spawn.suppressed");
+        this.grids = new ChunkKeyedMap[0];
+        // 抑制の効果を確認するための、読み込まれている敵対Mobの数 (参照時に集計する)
+        plugin.getMetrics().gauge("spawn.loadedHostile", this::countLoadedHostile);
+    }
+
+    /**
+     * 設定に従ってリスナーを登録します。無効の場合は登録を解除します。
+     */
+    public void start() {
+        stop();
+        MofuAssistantConfig.SpawnSuppressionConfig config = plugin.getPluginConfig().getSpawnSuppressionConfig();
+        if (!config.enable())
+            return;
+
+        // セルの一辺を半径以上にすることで、周囲3x3のセルに半径内の全てのプレイヤーが含まれる
+        cellSize = Math.max(16, config.radius());
+        radiusSquared = (double) config.radius() * config.radius();
+        refresh();
+        plugin.getServer().getPluginManager().registerEvents(this, plugin);
+        task = Bukkit.getScheduler().runTaskTimer(plugin, this::refresh, REFRESH_INTERVAL, REFRESH_INTERVAL);
+    }
+
+    @SuppressWarnings("unchecked")
+    public void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        HandlerList.unregisterAll(this);
+        grids = new ChunkKeyedMap[0];
+    }
+
+    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
+    public void onCreatureSpawnEvent(CreatureSpawnEvent event) {
+        if (event.getSpawnReason() != CreatureSpawnEvent.SpawnReason.NATURAL
+                || !MobHelper.isHostile(event.getEntityType()))
+            return;
+
+        checkedSpawns.increment();
+        Location location = event.getLocation();
+        if (isNearPeacefulPlayer(location.getWorld(), location.getX(), location.getZ())
+                || peacefulZoneIndex.contains(location)) {
+            event.setCancelled(true);
+            suppressedSpawns.increment();
+        }
+    }
+
+    private boolean isNearPeacefulPlayer(World world, double x, double z) {
+        int worldIndex = WorldIndex.of(world);
+        if (worldIndex >= grids.length || grids[worldIndex] == null)
+            return false;
+
+        ChunkKeyedMap<double[]> grid = grids[worldIndex];
+        int cellX = Math.floorDiv((int) Math.floor(x), cellSize);
+        int cellZ = Math.floorDiv((int) Math.floor(z), cellSize);
+        for (int dx = -1; dx <= 1; dx++) {
+            for (int dz = -1; dz <= 1; dz++) {
+                double[] positions = grid.get(cellX + dx, cellZ + dz);
+                if (positions == null)
+                    continue;
+                for (int i = 0; i < positions.length; i += 2) {
+                    double distanceX = positions[i] - x;
+                    double distanceZ = positions[i + 1] - z;
+                    if (distanceX * distanceX + distanceZ * distanceZ <= radiusSquared)
+                        return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private long countLoadedHostile() {
+        long count = 0;
+        for (World world : Bukkit.getWorlds()) {
+            for (LivingEntity entity : world.getLivingEntities()) {
+                if (MobHelper.isHostile(entity))
+                    count++;
+            }
+        }
+        return count;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void refresh() {
+        ChunkKeyedMap<double[]>[] updated = new ChunkKeyedMap[0];
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            if (!peacefulPlayerIndex.isPeaceful(player))
+                continue;
+
+            Location location = player.getLocation();
+            int worldIndex = WorldIndex.of(location.getWorld());
+            if (worldIndex >= updated.length)
+                updated = Arrays.copyOf(updated, worldIndex + 1);
+            if (updated[worldIndex] == null)
+                updated[worldIndex] = new ChunkKeyedMap<>();
+
+            int cellX = Math.floorDiv(location.getBlockX(), cellSize);
+            int cellZ = Math.floorDiv(location.getBlockZ(), cellSize);
+            double[] positions = updated[worldIndex].get(cellX, cellZ);
+            positions = positions == null ? new double[2] : Arrays.copyOf(positions, positions.length + 2);
+            positions[positions.length - 2] = location.getX();
+            positions[positions.length - 1] = location.getZ();
+            updated[worldIndex].put(cellX, cellZ, positions);
+        }
+        grids = updated;
+    }
+}
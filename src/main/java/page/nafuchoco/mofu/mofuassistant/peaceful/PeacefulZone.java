@@ -0,0 +1,65 @@
+/*
+ * Copyright 2021 NAFU_at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package page.nafuchoco.mofu.mofuassistant.peaceful;
+
+/**
+ * 管理者が設定したピースフルゾーン
+ * ゾーンはワールド内のX/Z座標の範囲で表され、高さ方向は全て含む
+ *
+ * @param name  ゾーン名
+ * @param world ワールド名
+ * @param minX  X座標の最小値 (ブロック座標、両端を含む)
+ * @param minZ  Z座標の最小値
+ * @param maxX  X座標の最大値
+ * @param maxZ  Z座標の最大値
+ */
+public record PeacefulZone(String name, String world, int minX, int minZ, int maxX, int maxZ) {
+
+    public PeacefulZone {
+        if (minX > maxX || minZ > maxZ)
+            throw new IllegalArgumentException("The minimum coordinate must not be greater than the maximum coordinate.");
+    }
+
+    public boolean contains(int x, int z) {
+        return x >= minX && x <= maxX && z >= minZ && z <= maxZ;
+    }
+
+    public int minChunkX() {
+        return minX >> 4;
+    }
+
+    public int minChunkZ() {
+        return minZ >> 4;
+    }
+
+    public int maxChunkX() {
+        return maxX >> 4;
+    }
+
+    public int maxChunkZ() {
+        return maxZ >> 4;
+    }
+
+    /**
+     * ゾーンが掛かるチャンクの数を返します。空間ハッシュに追加されるバケットの数と等しくなります。
+     *
+     * @return チャンクの数
+     */
+    public long chunkArea() {
+        return ((long) maxChunkX() - minChunkX() + 1) * ((long) maxChunkZ() - minChunkZ() + 1);
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2021 NAFU_at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package page.nafuchoco.mofu.mofuassistant.peaceful;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import page.nafuchoco.mofu.mofuassistant.data.WorldIndex;
+
+import java.util.*;
+
+/**
+ * ピースフルゾーンの空間ハッシュ
+ * ワールドごとにチャンク座標をキーとするバケットを持ち、各バケットにはそのチャンクに掛かるゾーンのみを格納する
+ * ゾーンの追加・削除時は、そのゾーンが掛かるチャンクのバケットのみを再構築する
+ */
+public class PeacefulZoneIndex {
+    private static final PeacefulZone[] EMPTY = new PeacefulZone[0];
+
+    private final Map<String, PeacefulZone> zones;
+    // WorldIndexのインデックスを添字とするワールドごとのバケット
+    private ChunkKeyedMap<PeacefulZone[]>[] buckets;
+
+    @SuppressWarnings("unchecked")
+    public PeacefulZoneIndex() {
+        this.zones = new LinkedHashMap<>();
+        this.buckets = new ChunkKeyedMap[0];
+    }
+
+    /**
+     * 指定した座標がいずれかのピースフルゾーンに含まれるかを返します。
+     *
+     * @param location 判定する座標
+     * @return ゾーン内の場合はtrue
+     */
+    public boolean contains(Location location) {
+        return contains(location.getWorld(), location.getBlockX(), location.getBlockZ());
+    }
+
+    public boolean contains(World world, int x, int z) {
+        if (zones.isEmpty())
+            return false;
+
+        int worldIndex = WorldIndex.of(world);
+        if (worldIndex >= buckets.length || buckets[worldIndex] == null)
+            return false;
+
+        PeacefulZone[] bucket = buckets[worldIndex].get(x >> 4, z >> 4);
+        if (bucket == null)
+            return false;
+        for (PeacefulZone zone : bucket) {
+            if (zone.contains(x, z))
+                return true;
+        }
+        return false;
+    }
+
+    public boolean isEmpty() {
+        return zones.isEmpty();
+    }
+
+    public PeacefulZone getZone(String name) {
+        return zones.get(name);
+    }
+
+    public Collection<PeacefulZone> getZones() {
+        return Collections.unmodifiableCollection(zones.values());
+    }
+
+    /**
+     * 全てのゾーンを置き換えます。
+     *
+     * @param loadedZones データベースから読み込んだゾーン
+     */
+    @SuppressWarnings("unchecked")
+    public void load(Collection<PeacefulZone> loadedZones) {
+        zones.clear();
+        buckets = new ChunkKeyedMap[0];
+        loadedZones.forEach(this::add);
+    }
+
+    /**
+     * ゾーンを追加します。同じ名前のゾーンが存在する場合は置き換えられます。
+     *
+     * @param zone 追加するゾーン
+     */
+    public void add(PeacefulZone zone) {
+        remove(zone.name());
+        zones.put(zone.name(), zone);
+
+        ChunkKeyedMap<PeacefulZone[]> worldBuckets = getOrCreateBuckets(WorldIndex.of(zone.world()));
+        for (int chunkX = zone.minChunkX(); chunkX <= zone.maxChunkX(); chunkX++) {
+            for (int chunkZ = zone.minChunkZ(); chunkZ <= zone.maxChunkZ(); chunkZ++) {
+                PeacefulZone[] bucket = worldBuckets.get(chunkX, chunkZ);
+                if (bucket == null)
+                    bucket = EMPTY;
+                PeacefulZone[] updated = Arrays.copyOf(bucket, bucket.length + 1);
+                updated[bucket.length] = zone;
+                worldBuckets.put(chunkX, chunkZ, updated);
+            }
+        }
+    }
+
+    /**
+     * ゾーンを削除します。
+     *
+     * @param name 削除するゾーン名
+     * @return 削除されたゾーン、存在しない場合はnull
+     */
+    public PeacefulZone remove(String name) {
+        PeacefulZone zone = zones.remove(name);
+        if (zone == null)
+            return null;
+
+        ChunkKeyedMap<PeacefulZone[]> worldBuckets = buckets[WorldIndex.of(zone.world())];
+        for (int chunkX = zone.minChunkX(); chunkX <= zone.maxChunkX(); chunkX++) {
+            for (int chunkZ = zone.minChunkZ(); chunkZ <= zone.maxChunkZ(); chunkZ++) {
+                PeacefulZone[] bucket = worldBuckets.get(chunkX, chunkZ);
+                if (bucket == null)
+                    continue;
+                if (bucket.length == 1) {
+                    worldBuckets.remove(chunkX, chunkZ);
+                } else {
+                    PeacefulZone[] updated = new PeacefulZone[bucket.length - 1];
+                    int i = 0;
+                    for (PeacefulZone other : bucket) {
+                        if (other != zone && i < updated.length)
+                            updated[i++] = other;
+                    }
+                    worldBuckets.put(chunkX, chunkZ, updated);
+                }
+            }
+        }
+        return zone;
+    }
+
+    private ChunkKeyedMap<PeacefulZone[]> getOrCreateBuckets(int worldIndex) {
+        if (worldIndex >= buckets.length)
+            buckets = Arrays.copyOf(buckets, worldIndex + 1);
+        if (buckets[worldIndex] == null)
+            buckets[worldIndex] = new ChunkKeyedMap<>();
+        return buckets[worldIndex];
+    }
+}
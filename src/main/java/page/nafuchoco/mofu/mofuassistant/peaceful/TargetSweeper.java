@@ -0,0 +1,192 @@
+/*
+ * Copyright 2021 NAFU_at
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package page.nafuchoco.mofu.mofuassistant.peaceful;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Mob;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitTask;
+import page.nafuchoco.mofu.mofuassistant.MobHelper;
+import page.nafuchoco.mofu.mofuassistant.MofuAssistant;
+import page.nafuchoco.mofu.mofuassistant.MofuAssistantConfig;
+import page.nafuchoco.mofu.mofuassistant.metrics.PluginMetrics;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ピースフルモードのプレイヤー周辺のMobを定期的に巡回し、不正なターゲットを解除するジョブ
+ * ターゲットイベントのキャンセルでは防げない、既にターゲット中のMobや対象外の理由で再ターゲットしたMobに対処する
+ * プレイヤー周辺のチャンクを順に走査し、1回の実行で走査するエンティティ数が上限に達した場合は
+ * チャンクの途中であっても次回の実行でその位置から再開する
+ */
+public class TargetSweeper {
+    private final MofuAssistant plugin;
+    private final PeacefulPlayerIndex peacefulPlayerIndex;
+    private final PluginMetrics.Timer runDuration;
+    private final LongAdder sweepCycles;
+    private final LongAdder visitedEntities;
+    private final LongAdder clearedTargets;
+
+    // 今回の巡回で残っているプレイヤー (ワールドが交互になるように並べる)
+    private final Deque<UUID> pendingPlayers;
+    // 走査中のプレイヤー周辺で残っているチャンク
+    private final Deque<ChunkPosition> pendingChunks;
+    // 今回の巡回で走査済みのチャンク (近くにいるプレイヤー同士で重複して走査しない)
+    private final Set<ChunkPosition> sweptChunks;
+    // 走査中のチャンクのエンティティと、次に走査する位置
+    private Entity[] currentEntities;
+    private int entityIndex;
+    private BukkitTask task;
+
+    public TargetSweeper(MofuAssistant plugin, PeacefulPlayerIndex peacefulPlayerIndex) {
+        this.plugin = plugin;
+        this.peacefulPlayerIndex = peacefulPlayerIndex;
+        this.runDuration = plugin.getMetrics().timer("sweeper.run");
+        this.sweepCycles = plugin.getMetrics().counter("sweeper.cycles");
+        this.visitedEntities = plugin.getMetrics().counter("sweeper.visited");
+        this.clearedTargets = plugin.getMetrics().counter("sweeper.cleared");
+        this.pendingPlayers = new ArrayDeque<>();
+        this.pendingChunks = new ArrayDeque<>();
+        this.sweptChunks = new HashSet<>();
+        plugin.getMetrics().gauge("sweeper.intervalTicks", () -> getConfig().intervalTicks());
+        plugin.getMetrics().gauge("sweeper.entityBudget", () -> getConfig().entityBudget());
+    }
+
+    /**
+     * 設定に従ってジョブを開始します。既に実行中の場合は再起動されます。
+     */
+    public void start() {
+        stop();
+        int interval = getConfig().intervalTicks();
+        if (interval > 0)
+            task = Bukkit.getScheduler().runTaskTimer(plugin, this::run, interval, interval);
+    }
+
+    public void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        pendingPlayers.clear();
+        pendingChunks.clear();
+        sweptChunks.clear();
+        currentEntities = null;
+    }
+
+    private void run() {
+        long startedAt = System.nanoTime();
+        if (pendingPlayers.isEmpty() && pendingChunks.isEmpty() && currentEntities == null)
+            beginCycle();
+
+        int budget = getConfig().entityBudget();
+        while (budget > 0) {
+            if (currentEntities != null) {
+                budget -= sweepEntities(budget);
+                continue;
+            }
+
+            ChunkPosition chunk = pendingChunks.poll();
+            if (chunk != null) {
+                // 読み込まれていないチャンクを走査のために読み込むことはしない
+                if (chunk.world().isChunkLoaded(chunk.x(), chunk.z()) && sweptChunks.add(chunk)) {
+                    currentEntities = chunk.world().getChunkAt(chunk.x(), chunk.z()).getEntities();
+                    entityIndex = 0;
+                }
+                continue;
+            }
+
+            if (pendingPlayers.isEmpty())
+                break;
+            Player player = Bukkit.getPlayer(pendingPlayers.poll());
+            if (player != null && peacefulPlayerIndex.isPeaceful(player))
+                addChunksAround(player);
+        }
+        runDuration.record(System.nanoTime() - startedAt);
+    }
+
+    /**
+     * 走査中のチャンクのエンティティを最大でlimit件走査します。
+     *
+     * @return 走査したエンティティの数
+     */
+    private int sweepEntities(int limit) {
+        int end = Math.min(currentEntities.length, entityIndex + limit);
+        int visited = end - entityIndex;
+        for (; entityIndex < end; entityIndex++) {
+            Entity entity = currentEntities[entityIndex];
+            // 前回の実行から再開した場合は、既に除去されたエンティティが含まれる
+            if (entity.isValid() && MobHelper.isOffensive(entity))
+                clearIllegalTarget((Mob) entity);
+        }
+        if (entityIndex >= currentEntities.length)
+            currentEntities = null;
+        visitedEntities.add(visited);
+        return visited;
+    }
+
+    private void addChunksAround(Player player) {
+        int chunkRadius = (getConfig().radius() + 15) >> 4;
+        Location location = player.getLocation();
+        int centerX = location.getBlockX() >> 4;
+        int centerZ = location.getBlockZ() >> 4;
+        for (int x = centerX - chunkRadius; x <= centerX + chunkRadius; x++) {
+            for (int z = centerZ - chunkRadius; z <= centerZ + chunkRadius; z++)
+                pendingChunks.add(new ChunkPosition(location.getWorld(), x, z));
+        }
+    }
+
+    private void beginCycle() {
+        // ワールドごとにプレイヤーをまとめ、各ワールドから1人ずつ交互に取り出す
+        Map<World, Deque<UUID>> byWorld = new LinkedHashMap<>();
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            if (peacefulPlayerIndex.isPeaceful(player))
+                byWorld.computeIfAbsent(player.getWorld(), world -> new ArrayDeque<>()).add(player.getUniqueId());
+        }
+
+        while (!byWorld.isEmpty()) {
+            Iterator<Deque<UUID>> iterator = byWorld.values().iterator();
+            while (iterator.hasNext()) {
+                Deque<UUID> players = iterator.next();
+                pendingPlayers.add(players.poll());
+                if (players.isEmpty())
+                    iterator.remove();
+            }
+        }
+        sweptChunks.clear();
+        if (!pendingPlayers.isEmpty())
+            sweepCycles.increment();
+    }
+
+    private void clearIllegalTarget(Mob mob) {
+        if (mob.getTarget() instanceof Player target && peacefulPlayerIndex.isPeaceful(target)) {
+            mob.setTarget(null);
+            clearedTargets.increment();
+        }
+    }
+
+    private MofuAssistantConfig.SweeperConfig getConfig() {
+        return plugin.getPluginConfig().getSweeperConfig();
+    }
+
+
+    private record ChunkPosition(World world, int x, int z) {
+    }
+}